@@ -0,0 +1,230 @@
+package cli;
+
+import model.ExternalSearch;
+import model.State;
+import model.StateGenerator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves and generates boards from the command line without JavaFX, for
+ * running puzzle production and regression checks on machines with no
+ * display. Boards are read and written in the format of {@link PuzzleFormat}.
+ * <pre>
+ * solve [-astar] [file]     solves each board in file (or stdin if none or -),
+ *                           with -astar by A* search over pattern databases
+ * generate [-budget seconds] count level
+ *                           generates count boards for the given level, each
+ *                           the hardest found within the budget (default 30)
+ * explore [file]            explores every board reachable from each board in
+ *                           file (or stdin) with the layers kept on disk
+ * </pre>
+ * Results go to stdout, one line per board, and everything the model prints
+ * while working goes to stderr so the output can be piped.
+ */
+public class Main {
+    private static final String USAGE = "usage: solve [-astar] [file] | generate [-budget seconds] count level | explore [file]";
+    /**
+     * The time each generated board may take unless a budget is given.
+     */
+    private static final Duration DEFAULT_BUDGET = Duration.ofSeconds(30);
+
+    /**
+     * Where results are written, stdout before it is redirected.
+     */
+    private static PrintStream out;
+
+    public static void main(String[] args) {
+        out = System.out;
+        System.setOut(System.err);
+
+        int status;
+        try {
+            if (args.length == 0) {
+                status = usage();
+            } else if (args[0].equals("solve") && args.length <= 3) {
+                boolean aStar = args.length > 1 && args[1].equals("-astar");
+                int files = args.length - (aStar ? 2 : 1);
+                status = (files > 1) ? usage() : solve((files == 0) ? "-" : args[args.length - 1], aStar);
+            } else if (args[0].equals("explore") && args.length <= 2) {
+                status = explore((args.length == 1) ? "-" : args[1]);
+            } else if (args[0].equals("generate") && args.length == 3) {
+                status = generate(Integer.parseInt(args[1]), Integer.parseInt(args[2]), DEFAULT_BUDGET);
+            } else if (args[0].equals("generate") && args.length == 5 && args[1].equals("-budget")) {
+                long seconds = Long.parseLong(args[2]);
+                status = (seconds < 1) ? usage() : generate(Integer.parseInt(args[3]), Integer.parseInt(args[4]), Duration.ofSeconds(seconds));
+            } else {
+                status = usage();
+            }
+        } catch (NumberFormatException e) {
+            status = usage();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            status = 1;
+        }
+        out.flush();
+        System.exit(status);
+    }
+
+    private static int usage() {
+        System.err.println(USAGE);
+        return 2;
+    }
+
+    /**
+     * @return a pool with a thread per core
+     */
+    private static ExecutorService newPool() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Solves every board in {@code path} in parallel and prints, in the order
+     * they were read, each board followed by the number of moves, the time
+     * taken in milliseconds and the moves. Blank lines and lines starting with
+     * {@code #} are skipped.
+     * @param path the file to read or {@code -} for stdin
+     * @param aStar whether to solve with {@link State#solveAStar()} rather
+     *              than {@link State#solve()}
+     * @return the exit status, 1 if any board was invalid or unsolvable
+     * @throws IOException if the file could not be read
+     */
+    private static int solve(String path, boolean aStar) throws IOException {
+        List<String> lines = readBoards(path);
+        ExecutorService pool = newPool();
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (String line : lines) {
+                results.add(pool.submit(() -> solveLine(line, aStar)));
+            }
+            int status = 0;
+            for (Future<String> result : results) {
+                String s = join(result);
+                if (s.contains(" error: ")) status = 1;
+                out.println(s);
+            }
+            return status;
+        } finally {
+            /* Also stops the other boards if one of them failed */
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @param path the file to read or {@code -} for stdin
+     * @return the lines of the file, except blank lines and lines starting
+     *         with {@code #}
+     * @throws IOException if the file could not be read
+     */
+    private static List<String> readBoards(String path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(path.equals("-") ? new InputStreamReader(System.in) : new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Explores every state reachable from each board in {@code path}, one
+     * board at a time, keeping the search on disk in the temporary directory
+     * so that boards too big to explore in memory can be analysed. Prints each
+     * board followed by the number of reachable states, the greatest distance
+     * from it and the number of states at each distance.
+     * @param path the file to read or {@code -} for stdin
+     * @return the exit status, 1 if any board was invalid
+     * @throws IOException if the file could not be read or the search could
+     *         not write its layers
+     */
+    private static int explore(String path) throws IOException {
+        int status = 0;
+        Path tmp = Path.of(System.getProperty("java.io.tmpdir"));
+        for (String line : readBoards(path)) {
+            PuzzleFormat.Puzzle puzzle;
+            try {
+                puzzle = PuzzleFormat.parse(line);
+            } catch (IllegalArgumentException e) {
+                out.println(line + " error: " + e.getMessage());
+                status = 1;
+                continue;
+            }
+            try (ExternalSearch search = new ExternalSearch(puzzle.getState(), tmp, ExternalSearch.DEFAULT_BUFFER_SIZE)) {
+                long[] sizes = search.explore();
+                out.println(line + " " + Arrays.stream(sizes).sum() + " " + (sizes.length - 1) + " " + Arrays.toString(sizes));
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @param line a board
+     * @param aStar whether to solve with {@link State#solveAStar()}
+     * @return the result line for the board
+     */
+    private static String solveLine(String line, boolean aStar) {
+        PuzzleFormat.Puzzle puzzle;
+        try {
+            puzzle = PuzzleFormat.parse(line);
+        } catch (IllegalArgumentException e) {
+            return line + " error: " + e.getMessage();
+        }
+        long start = System.nanoTime();
+        State.Move[] solution = aStar ? puzzle.getState().solveAStar() : puzzle.getState().solve();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (solution == null) return line + " error: no solution " + millis + "ms";
+        return line + " " + solution.length + " " + millis + "ms " + puzzle.formatMoves(solution);
+    }
+
+    /**
+     * Generates {@code count} boards for {@code level} in parallel and prints
+     * each with the number of moves it takes to solve.
+     * @param count the number of boards
+     * @param level the level, as used by the game
+     * @param budget the time each board may take, after which the hardest
+     *               found so far is used
+     * @return the exit status
+     */
+    private static int generate(int count, int level, Duration budget) {
+        if (count < 0 || level < 1) return usage();
+        ExecutorService pool = newPool();
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                results.add(pool.submit(() -> {
+                    State s = new StateGenerator().generate(level, budget);
+                    return PuzzleFormat.format(s) + " " + s.solve().length;
+                }));
+            }
+            for (Future<String> result : results) {
+                out.println(join(result));
+            }
+            return 0;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String join(Future<String> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package cli;
+
+import model.Car;
+import model.IntRect;
+import model.IntVec;
+import model.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reads and writes boards in a compact text format, one board per line. A
+ * board of size n by n is n*n characters read row by row, where {@code .} is
+ * an empty cell, {@code A} is the goal car and every other letter is another
+ * car. A 6x6 board is 36 characters, for example
+ * <pre>BB.C..D..C..DAAC..D.....EE.....FFF..</pre>
+ * The goal car has to reach the right edge of the board if it is horizontal,
+ * or the bottom edge if it is vertical.
+ */
+public class PuzzleFormat {
+    /**
+     * The character for the goal car.
+     */
+    public static final char GOAL_CAR = 'A';
+    /**
+     * The characters {@link #format(State)} writes the other cars as.
+     */
+    private static final String CAR_NAMES = "BCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    /**
+     * A parsed board, with the letter each of its cars was written as.
+     */
+    public static class Puzzle {
+        private final State state;
+        private final char[] names;
+
+        private Puzzle(State state, char[] names) {
+            this.state = state;
+            this.names = names;
+        }
+        /**
+         * @return the board
+         */
+        public State getState() { return state; }
+        /**
+         * @param carI the index of a car in the board
+         * @return the letter the car was written as
+         */
+        public char getName(int carI) { return names[carI]; }
+        /**
+         * @param solution the moves to write
+         * @return the moves written as the car's letter followed by the signed
+         *         delta, separated by spaces, e.g. {@code B+1 A+3}
+         */
+        public String formatMoves(State.Move[] solution) {
+            StringBuilder sb = new StringBuilder();
+            for (State.Move m : solution) {
+                if (sb.length() != 0) sb.append(' ');
+                sb.append(names[m.getCarI()]).append(m.getDelta() < 0 ? "" : "+").append(m.getDelta());
+            }
+            return sb.toString();
+        }
+    }
+
+    private PuzzleFormat() {}
+
+    /**
+     * @param text the board in the compact format
+     * @return the parsed board
+     * @throws IllegalArgumentException if {@code text} is not a valid board
+     */
+    public static Puzzle parse(String text) {
+        int n = (int) Math.round(Math.sqrt(text.length()));
+        if (n * n != text.length()) throw new IllegalArgumentException("a board needs a square number of cells, got " + text.length());
+
+        /* Gather the cells of each letter in order of first appearance, the goal car goes last */
+        ArrayList<Character> letters = new ArrayList<>();
+        ArrayList<IntVec[]> bounds = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '.') continue;
+            if (!Character.isLetter(ch)) throw new IllegalArgumentException("unexpected character '" + ch + "'");
+            IntVec p = new IntVec(i % n, i / n);
+            int li = letters.indexOf(ch);
+            if (li < 0) {
+                letters.add(ch);
+                bounds.add(new IntVec[]{p, p, new IntVec(1, 0)});
+            } else {
+                IntVec[] b = bounds.get(li);
+                b[0] = IntVec.min(b[0], p);
+                b[1] = b[1].max(p);
+                b[2] = b[2].add(1, 0);
+            }
+        }
+        int goalI = letters.indexOf(GOAL_CAR);
+        if (goalI < 0) throw new IllegalArgumentException("no goal car '" + GOAL_CAR + "'");
+        letters.add(letters.remove(goalI));
+        bounds.add(bounds.remove(goalI));
+
+        Car[] cars = new Car[letters.size()];
+        char[] names = new char[letters.size()];
+        for (int i = 0; i < cars.length; i++) {
+            IntVec[] b = bounds.get(i);
+            IntRect r = new IntRect(b[0], b[1].sub(b[0]).add(1));
+            if (r.getArea() != b[2].getX() || (r.getW() != 1) == (r.getH() != 1)) {
+                throw new IllegalArgumentException("car '" + letters.get(i) + "' is not a straight line of at least 2 cells");
+            }
+            cars[i] = new Car(r, (1 < r.getW()) ? Car.RIGHT : Car.DOWN);
+            names[i] = letters.get(i);
+        }
+
+        IntRect goalCar = cars[cars.length - 1].getRect();
+        IntVec goal = (1 < goalCar.getW()) ? new IntVec(n - goalCar.getW(), goalCar.getY()) : new IntVec(goalCar.getX(), n - goalCar.getH());
+        try {
+            return new Puzzle(new State(new IntVec(n, n), goal, cars), names);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param state the board to write, its goal must be on the edge the
+     *              format expects
+     * @return the board in the compact format, the goal car as {@link #GOAL_CAR}
+     *         and the other cars lettered from {@code B} in index order
+     * @throws IllegalArgumentException if there are more cars than letters
+     */
+    public static String format(State state) {
+        if (CAR_NAMES.length() < state.getNumCars() - 1) throw new IllegalArgumentException("too many cars to write " + state.getNumCars());
+        IntRect b = state.getBoardRect();
+        char[] cells = new char[b.getW() * b.getH()];
+        Arrays.fill(cells, '.');
+        for (int i = 0; i < state.getNumCars(); i++) {
+            char name = (i == state.getNumCars() - 1) ? GOAL_CAR : CAR_NAMES.charAt(i);
+            state.getCar(i).getRect().forAll((x, y) -> cells[y * b.getW() + x] = name);
+        }
+        return new String(cells);
+    }
+}
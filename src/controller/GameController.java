@@ -4,7 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -36,6 +36,14 @@ public class GameController {
     @FXML private Button undoButton;
     @FXML private Button newGameButton;
     @FXML private Button menuButton;
+    @FXML private Button autoSolveButton;
+    
+    private SolutionPlayer player;
+    /**
+     * The last finished game analysed, and its analysis once it is done.
+     */
+    private GameState analysedGame;
+    private GameAnalysis analysis;
     
     
     /**
@@ -44,20 +52,20 @@ public class GameController {
      */
     public void init(GlobalController g) {
         this.g = g;
-        winSound = new AudioClip(Paths.get("src/sounds/win.mp3").toUri().toString());
+        winSound = Assets.getSound(Assets.WIN_SOUND);
         //winSound.setVolume(value);
 
         /* Grab the IntVec of where you started to press */
         IntVec pressStart[] = new IntVec[1];
         gameGrid.addEventFilter(MouseEvent.MOUSE_PRESSED, e -> {
-            pressStart[0] = new IntVec((int)(e.getX()/100), (int)(e.getY()/100));
+            pressStart[0] = cellAt(e);
         });
 
         /* When you release the mouse, grab the IntVec and create a newModel with the move
         generated by your mouseclicks. If the move is legal, then set the model in GlobalController
         to our new model. */
         gameGrid.addEventFilter(MouseEvent.MOUSE_RELEASED, e -> {
-            IntVec pressEnd = new IntVec((int)(e.getX()/100), (int)(e.getY()/100)).clamp(0, 5);
+            IntVec pressEnd = cellAt(e);
         
             Model newModel = g.getModel().withGameStateMove(pressStart[0], pressEnd);
             if (newModel != null) {
@@ -68,6 +76,18 @@ public class GameController {
         update();
     }
     
+    /**
+     * The board is drawn to fill the game grid, so the size of a cell comes
+     * from the size of the grid and the board.
+     * @param e the mouse event on the game grid
+     * @return the cell of the board under the mouse, clamped to the board
+     */
+    private IntVec cellAt(MouseEvent e) {
+        IntRect board = g.getModel().getGameState().getCurrentState().getBoardRect();
+        double cell = Math.min(gameGrid.getWidth() / board.getW(), gameGrid.getHeight() / board.getH());
+        return new IntVec((int)(e.getX()/cell), (int)(e.getY()/cell)).clamp(board.getPos(), board.getEnd().sub(1));
+    }
+    
     /**
      * Disables the buttons if they cannot be used. Called every time a new board is drawn.
        Updates the move number on the sidePanel every time a new board is generated.
@@ -77,6 +97,7 @@ public class GameController {
      */
     public void update() {
 
+        updateAutoSolveButton();
         redoButton.setDisable(!g.getModel().getGameState().canRedo());
         undoButton.setDisable(!g.getModel().getGameState().canUndo());
 
@@ -84,16 +105,86 @@ public class GameController {
         levelLabel.setText("Level: " + g.getModel().getLevel());
 
         if (g.getModel().getGameState().getCurrentState().hasWon()) {
+            analyse(g.getModel().getGameState());
+            if (analysis != null) showAnalysis();
             winSound.setVolume(g.getModel().getSettings().getVolume());
             winSound.play();
             if (AlertBox.display("You're a winner!", "Congratulations you won! Would you like to go to the next level?")) {
                 g.setModel(g.getModel().withGameStateNext(), false);
-                g.replace(new Game(g));
+                g.replace(g.getView(Game.class, Game::new));
             }
         }
     }
 
     
+    /**
+     * Works out how well a finished game was played in the background, and
+     * shows the moves made against the fewest possible in place of the move
+     * number once it is done. A game is only analysed once, however many
+     * times the view is updated while it is won.
+     * @param game the finished game
+     */
+    private void analyse(GameState game) {
+        /* Undo then redo makes a new game state with the same moves */
+        if (analysedGame != null && analysedGame.getPlayedStates().equals(game.getPlayedStates())) return;
+        analysedGame = game;
+        analysis = null;
+        CompletableFuture.supplyAsync(() -> new GameAnalysis(game)).thenAccept(a -> {
+            System.out.println(a);
+            Platform.runLater(() -> {
+                /* Another game may have been won since */
+                if (analysedGame != game) return;
+                analysis = a;
+                showAnalysis();
+            });
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+    }
+    
+    /**
+     * Shows the moves made against the fewest possible in place of the move
+     * number.
+     */
+    private void showAnalysis() {
+        moveNumberLabel.setText("Moves: " + analysis.getMovesMade() + " (best " + analysis.getOptimalMoves() + ")");
+    }
+    
+    /**
+     * Shows what pressing the auto solve button will do next.
+     */
+    private void updateAutoSolveButton() {
+        if (player == null || player.isStopped()) autoSolveButton.setText("Solve");
+        else autoSolveButton.setText(player.isPlaying() ? "Pause" : "Resume");
+    }
+    
+    /**
+     * Stops any solution being played back.
+     */
+    private void stopAutoSolve() {
+        if (player != null) player.cancel();
+    }
+    
+    /**
+     * Method is called when the auto solve button is pressed. Starts playing
+     * back a solution of the board, or pauses or resumes the one playing.
+     * Making any other change to the board stops the playback.
+     * @param event
+     */
+    @FXML
+    void autoSolve(ActionEvent event) {
+        if (player == null || player.isStopped()) {
+            System.out.println("Auto solving...");
+            player = new SolutionPlayer(g, this::updateAutoSolveButton);
+        } else if (player.isPlaying()) {
+            player.pause();
+        } else {
+            player.resume();
+        }
+        updateAutoSolveButton();
+    }
+    
     /**
      * Method is called when new game button is pressed. Program double check with user,
      * whether they want to start a new game.
@@ -103,15 +194,16 @@ public class GameController {
     @FXML
     void startNewGame(ActionEvent event) throws IOException {
         System.out.println("Start New Model...");
+        stopAutoSolve();
         File savedFile = new File("save.json");
         if(savedFile.exists() && !savedFile.isDirectory()) {
 	        if (AlertBox.display("Start a new Model", "Are you sure you want to start a new game?")) {
 	            g.setModel(g.getModel().withGameStateNew());
-	            g.replace(new Game(g));
+	            g.replace(g.getView(Game.class, Game::new));
 	        }
         }else {
         	g.setModel(new Model().withGameStateNew());
-        	g.replace(new Game(g));
+        	g.replace(g.getView(Game.class, Game::new));
         }
     }
 
@@ -177,7 +269,8 @@ public class GameController {
     @FXML
     void openSettings(ActionEvent event) {
         System.out.println("Opening Settings...");
-        g.push(new Settings(g));
+        stopAutoSolve();
+        g.push(g.getView(Settings.class, Settings::new));
     }
 
     /**
@@ -187,8 +280,9 @@ public class GameController {
      */
     @FXML
     void menu() throws IOException {
+        stopAutoSolve();
     	save();
-    	g.push(new MainMenu(g));
+    	g.push(g.getView(MainMenu.class, MainMenu::new));
     }
     
     
@@ -209,6 +303,8 @@ public class GameController {
      */
     public void getHint(ActionEvent e) {
         System.out.println("Getting a hint");
+        /* A hint keeps the current state, so playback would not notice it */
+        stopAutoSolve();
         Model newModel = g.getModel().withGameStateHint();
         if (newModel != null) g.setModel(newModel);
     }
@@ -224,5 +320,6 @@ public class GameController {
         assert undoButton != null : "fx:id=\"undoButton\" was not injected: check your FXML file 'game.fxml'.";
         assert newGameButton != null : "fx:id=\"newGameButton\" was not injected: check your FXML file 'game.fxml'.";
         assert menuButton != null : "fx:id=\"menuButton\" was not injceted: check your FXML file 'game.fxml.'";
+        assert autoSolveButton != null : "fx:id=\"autoSolveButton\" was not injected: check your FXML file 'game.fxml'.";
     }
 }
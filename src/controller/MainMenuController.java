@@ -30,7 +30,7 @@ public class MainMenuController {
     @FXML
     void openTutorial(ActionEvent event) {
         System.out.println("Clicked Tutorial button, opening tutorial...");
-        g.push(new Tutorial(g));
+        g.push(g.getView(Tutorial.class, Tutorial::new));
     }
 
     /**
@@ -45,11 +45,11 @@ public class MainMenuController {
         if(savedFile.exists()) {
 	        if (g.getModel().getGameState() == null || AlertBox.display("", "We detected a saved game. Are you sure you want to start a new game?")) {
 	            g.setModel(g.getModel().withGameStateNew());
-	            g.push(new Game(g));
+	            g.push(g.getView(Game.class, Game::new));
 	        }
         }else {
         	g.setModel(new Model().withGameStateNew());
-            g.push(new Game(g));
+            g.push(g.getView(Game.class, Game::new));
         }
     }
 
@@ -63,7 +63,7 @@ public class MainMenuController {
     	File savedFile = new File("save.json");
     	if(savedFile.exists() && !savedFile.isDirectory()) {
 	        if (g.getModel().getGameState() != null) {
-	            g.push(new Game(g));
+	            g.push(g.getView(Game.class, Game::new));
 	        } else {
 	            System.out.println("No game was saved!");
 	        }
@@ -79,13 +79,11 @@ public class MainMenuController {
     @FXML
     void openSettings(ActionEvent event) {
         System.out.println("Clicked Settings Button. opening settings...");
-        g.push(new Settings(g));
+        g.push(g.getView(Settings.class, Settings::new));
     }
 
     public void update() {
         File savedFile = new File("save.json");
-        if (!savedFile.exists() || savedFile.isDirectory()) {
-            resumeGameButton.setDisable(true);
-        }
+        resumeGameButton.setDisable(!savedFile.exists() || savedFile.isDirectory());
     }
 }
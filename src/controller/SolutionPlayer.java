@@ -0,0 +1,121 @@
+package controller;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+import model.Model;
+import model.State;
+import view.GlobalController;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Solves the current board in the background and plays the solution back one
+ * move at a time. The solver hands moves over through a queue, so playback
+ * starts as soon as the first move is there and the FX thread never waits on
+ * the search. Playback can be paused, and stops by itself if the board is
+ * changed by anything else.
+ */
+class SolutionPlayer {
+    /**
+     * How long each move is shown for before the next one.
+     */
+    private static final Duration MOVE_INTERVAL = Duration.millis(400);
+
+    /**
+     * Solves boards off the FX thread, a daemon so it never keeps the game open.
+     */
+    private static final ExecutorService SOLVER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "auto-solver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final GlobalController g;
+    private final Runnable onStopped;
+    private final ConcurrentLinkedQueue<State.Move> moves = new ConcurrentLinkedQueue<>();
+    private final Timeline timeline;
+    private volatile boolean solved, cancelled;
+    /**
+     * The state the last played move led to, if the model's current state is
+     * anything else the player has done something and playback stops.
+     */
+    private State expected;
+
+    /**
+     * Starts solving the current board and playing back the moves.
+     * @param g the GlobalController
+     * @param onStopped run on the FX thread once playback has stopped
+     */
+    SolutionPlayer(GlobalController g, Runnable onStopped) {
+        this.g = g;
+        this.onStopped = onStopped;
+        this.expected = g.getModel().getGameState().getCurrentState();
+
+        State start = expected;
+        CompletableFuture.runAsync(() -> {
+            State.Move[] solution = start.solve();
+            if (solution != null) {
+                for (State.Move move : solution) {
+                    if (cancelled) break;
+                    moves.add(move);
+                }
+            }
+            solved = true;
+        }, SOLVER);
+
+        timeline = new Timeline(new KeyFrame(MOVE_INTERVAL, e -> step()));
+        timeline.setCycleCount(Animation.INDEFINITE);
+        timeline.play();
+    }
+
+    /**
+     * Plays the next move if there is one yet.
+     */
+    private void step() {
+        if (g.getModel().getGameState().getCurrentState() != expected) {
+            System.out.println("Board changed, stopping playback");
+            cancel();
+            return;
+        }
+        State.Move move = moves.poll();
+        if (move == null) {
+            if (solved && moves.isEmpty()) cancel();
+            return;
+        }
+        Model newModel = g.getModel().withGameStateMove(move);
+        if (newModel == null) {
+            cancel();
+            return;
+        }
+        expected = newModel.getGameState().getCurrentState();
+        g.setModel(newModel);
+    }
+
+    /**
+     * @return whether moves are still being played
+     */
+    boolean isPlaying() { return timeline.getStatus() == Animation.Status.RUNNING; }
+    /**
+     * @return whether the playback has finished or been cancelled
+     */
+    boolean isStopped() { return timeline.getStatus() == Animation.Status.STOPPED; }
+
+    void pause() { timeline.pause(); }
+    void resume() { timeline.play(); }
+
+    /**
+     * Stops playback for good, the solver stops queueing moves too.
+     */
+    void cancel() {
+        if (isStopped()) return;
+        cancelled = true;
+        timeline.stop();
+        moves.clear();
+        onStopped.run();
+    }
+}
@@ -6,6 +6,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import view.Assets;
 import view.GlobalController;
 
 import java.util.ArrayList;
@@ -32,14 +33,6 @@ public class TutorialController {
      * Loads images for the tutorial
      */
     public void loadImages() {
-        String[] imageFilePaths = new String[]{
-                "/images/tutorial1.png",
-                "/images/tutorial2.png",
-                "/images/tutorial3.png",
-                "/images/tutorial4.png",
-                "/images/tutorial5.png",
-        };
-
         slideInstructions = new String[]{
                 "This is what your game board looks like.",
                 "Click on a box to select it, the box you select will be highlighted.",
@@ -48,12 +41,20 @@ public class TutorialController {
                 "Congratulations, when you win you can start the next level. \n Be careful! The levels get harder and harder."
         };
 
-        images = Arrays.stream(imageFilePaths).map(filePath -> new Image(filePath)).collect(Collectors.toCollection(ArrayList::new));
+        images = Arrays.stream(Assets.TUTORIAL_IMAGES).map(Assets::getImage).collect(Collectors.toCollection(ArrayList::new));
+        showFirstSlide();
+    }
+    
+    /**
+     * Goes back to the first slide of the tutorial
+     */
+    public void showFirstSlide() {
         this.imageNumber = 0;
         imageView.setImage(images.get(imageNumber));
         instructionLabel.setText(slideInstructions[imageNumber]);
         /* Cannot initially go back */
         prevButton.setDisable(true);
+        nextButton.setDisable(false);
     }
     
     /**
@@ -82,11 +82,19 @@ public class Board {
      */
     public static Board genFor(IntRect rect, IntRect[] rects) {
         Board board = new Board(rect);
-        IntStream.range(0, rects.length).forEach(i ->
-            rects[i].forAll((x, y) -> board.set(x, y, i))
-        );
+        for (int i = 0; i < rects.length; i++) board.fill(rects[i], i);
         return board;
     }
+    /**
+     * Sets every cell in {@code r} to {@code v}.
+     * @param r the rectangle to fill
+     * @param v the value to fill it with
+     */
+    private void fill(IntRect r, int v) {
+        for (int y = r.getY(); y < r.getY() + r.getH(); y++) {
+            for (int x = r.getX(); x < r.getX() + r.getW(); x++) set(x, y, v);
+        }
+    }
     
     /**
      * Same as {@link #genFor(IntRect, IntRect[])} using the rects of
@@ -96,7 +104,9 @@ public class Board {
      * @return the newly constructed board
      */
     public static Board genFor(IntRect rect, Car[] cars) {
-        return genFor(rect, Arrays.stream(cars).map(Car::getRect).toArray(IntRect[]::new));
+        Board board = new Board(rect);
+        for (int i = 0; i < cars.length; i++) board.fill(cars[i].getRect(), i);
+        return board;
     }
     
     /**
@@ -0,0 +1,65 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A priority queue of states for a search whose priorities are small integers
+ * that never go below the last one taken, like an A* search with a consistent
+ * heuristic. Each priority has its own stack, so adding and taking are
+ * constant time and states with equal priority come out newest first. Each
+ * state is queued along with its distance, so a caller can tell an entry that
+ * a shorter way to the state has since replaced.
+ */
+final class BucketQueue {
+    /**
+     * The index and distance of each queued state, in pairs, by priority.
+     */
+    private int[][] buckets = new int[64][];
+    private int[] counts = new int[64];
+    private int min;
+    private int size;
+    private int lastDist;
+
+    /**
+     * @param priority the priority, at least that of the last state taken
+     * @param i the index of the state
+     * @param dist the distance of the state
+     */
+    void add(int priority, int i, int dist) {
+        if (priority >= buckets.length) {
+            int length = Math.max(buckets.length * 2, priority + 1);
+            buckets = Arrays.copyOf(buckets, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        int[] bucket = buckets[priority];
+        if (bucket == null) {
+            bucket = buckets[priority] = new int[32];
+        } else if (counts[priority] == bucket.length) {
+            bucket = buckets[priority] = Arrays.copyOf(bucket, bucket.length * 2);
+        }
+        bucket[counts[priority]++] = i;
+        bucket[counts[priority]++] = dist;
+        min = Math.min(min, priority);
+        size++;
+    }
+
+    boolean isEmpty() { return size == 0; }
+
+    /**
+     * Takes the newest of the states with the lowest priority.
+     * @return the index of the state, its distance is then given by
+     *         {@link #lastDist()}
+     */
+    int poll() {
+        while (counts[min] == 0) min++;
+        lastDist = buckets[min][--counts[min]];
+        size--;
+        return buckets[min][--counts[min]];
+    }
+
+    /**
+     * @return the distance the state last taken by {@link #poll()} was queued
+     *         with
+     */
+    int lastDist() { return lastDist; }
+}
@@ -98,6 +98,18 @@ public class Car implements Comparable<Car> {
         return new Car(new IntRect(rect.getPos().add(delta), rect.getSize()), direction);
     }
     
+    /**
+     * The canonical car for each position, size and direction in use.
+     */
+    private static final WeakInterner<Integer, Car> INTERNED = new WeakInterner<>();
+    /**
+     * Unlike {@link #equals(Object)}, which only compares positions, the
+     * canonical car is the same car in every respect.
+     * @return the one instance shared by every interned car equal to this one
+     *         in position, size and direction
+     */
+    public Car intern() { return INTERNED.intern(PackedState.packCar(this), () -> this); }
+    
     /**
      * Key to store the car's rect under.
      */
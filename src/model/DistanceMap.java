@@ -0,0 +1,181 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The number of moves to the goal from every state reachable from a start
+ * state, found in two passes over the whole component: a breadth first search
+ * forwards from the start to find every state, then one backwards from every
+ * won state at once to number them. Moves can always be undone, so the states
+ * a move leads to are also the states it can come from.
+ * <p>
+ * With the whole component numbered, every question about how good a move is
+ * can be answered by lookups rather than searches, see
+ * {@link #rateMoves(State)}. The states are kept in a {@link StateArena}
+ * outside the heap, released by {@link #close()}.
+ */
+public class DistanceMap implements AutoCloseable {
+    /**
+     * The distance of a state the goal cannot be reached from.
+     */
+    public static final int UNSOLVABLE = -1;
+
+    /**
+     * How a move changes the number of moves left.
+     */
+    public enum Quality {
+        /**
+         * One fewer move is left, the move is on an optimal solution.
+         */
+        OPTIMAL,
+        /**
+         * As many moves are left as before.
+         */
+        NEUTRAL,
+        /**
+         * One more move is left.
+         */
+        WORSENING
+    }
+
+    /**
+     * A legal move along with how it changes the number of moves left.
+     */
+    public static final class RatedMove {
+        private final State.Move move;
+        private final int delta;
+
+        private RatedMove(State.Move move, int delta) {
+            this.move = move;
+            this.delta = delta;
+        }
+
+        /**
+         * @return the move
+         */
+        public State.Move getMove() { return move; }
+        /**
+         * @return the number of moves left after the move minus the number
+         *         before, -1, 0 or 1
+         */
+        public int getDelta() { return delta; }
+        /**
+         * @return the quality of the move
+         */
+        public Quality getQuality() {
+            return (delta < 0) ? Quality.OPTIMAL : (delta == 0) ? Quality.NEUTRAL : Quality.WORSENING;
+        }
+    }
+
+    /**
+     * The number of states the map makes room for up front.
+     */
+    private static final int CAPACITY = 1 << 12;
+
+    private final StateArena arena;
+
+    /**
+     * Explores and numbers every state reachable from {@code start}.
+     * @param start the state to explore from
+     */
+    public DistanceMap(State start) {
+        arena = new StateArena(start, CAPACITY);
+        byte[] rec = arena.encode(start);
+        arena.add(rec, StateArena.NO_PARENT, UNSOLVABLE);
+
+        /* Forwards: the arena numbers states in the order they are found, so
+        it is also the queue. The neighbours of state i are kept in
+        edges[edgeStart[i]] up to edges[edgeStart[i+1]] for the way back */
+        int[] edgeStart = new int[CAPACITY + 1];
+        int[][] edges = {new int[CAPACITY * 8]};
+        int[] nEdges = {0};
+        for (int i = 0; i < arena.size(); i++) {
+            if (i + 1 == edgeStart.length) edgeStart = Arrays.copyOf(edgeStart, edgeStart.length * 2);
+            edgeStart[i] = nEdges[0];
+            arena.getRecord(i, rec);
+            int parent = i;
+            arena.forEachMove(rec, (carI, delta) -> {
+                /* The arena copies the record, so one array does for every move */
+                rec[carI] += delta;
+                int j = arena.add(rec, parent, UNSOLVABLE);
+                rec[carI] -= delta;
+                if (j < 0) j = -j - 1;
+                if (nEdges[0] == edges[0].length) edges[0] = Arrays.copyOf(edges[0], edges[0].length * 2);
+                edges[0][nEdges[0]++] = j;
+                return true;
+            });
+        }
+        edgeStart[arena.size()] = nEdges[0];
+        /* No state reachable from the start can be solved either, so they all
+        keep the distance they were added with */
+        if (start.isProvablyUnsolvable()) return;
+
+        /* Backwards: the won states first, then each state in the order it is numbered */
+        int[] queue = new int[arena.size()];
+        int tail = 0;
+        for (int i = 0; i < arena.size(); i++) {
+            arena.getRecord(i, rec);
+            if (arena.isWon(rec)) {
+                arena.setParent(i, arena.getParent(i), 0);
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int i = queue[head];
+            int dist = arena.getDist(i) + 1;
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                int j = edges[0][e];
+                if (arena.getDist(j) == UNSOLVABLE) {
+                    arena.setParent(j, arena.getParent(j), dist);
+                    queue[tail++] = j;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of states reachable from the start
+     */
+    public int size() { return arena.size(); }
+
+    /**
+     * @param s a state reachable from the start
+     * @return the number of moves to solve {@code s} or {@link #UNSOLVABLE}
+     *         if it cannot be solved, which is then the case for every state
+     *         reachable from the start
+     * @throws IllegalArgumentException if {@code s} is not reachable from the
+     *                                  start
+     */
+    public int getDistance(State s) {
+        int i = arena.find(arena.encode(s));
+        if (i < 0) throw new IllegalArgumentException("state is not reachable from the start");
+        return arena.getDist(i);
+    }
+
+    /**
+     * Rates every legal move from {@code s} by how it changes the number of
+     * moves left, with one lookup per move.
+     * @param s a state reachable from the start
+     * @return the moves in the order of {@link State#genMoves()}, each with
+     *         its rating, all {@link Quality#NEUTRAL} (with a delta of 0) if
+     *         {@code s} cannot be solved, since then neither can any state a
+     *         move leads to
+     * @throws IllegalArgumentException if {@code s} is not reachable from the
+     *                                  start
+     */
+    public RatedMove[] rateMoves(State s) {
+        int dist = getDistance(s);
+        State.Move[] moves = s.genMoves();
+        RatedMove[] rated = new RatedMove[moves.length];
+        for (int k = 0; k < moves.length; k++) {
+            rated[k] = new RatedMove(moves[k], getDistance(moves[k].getState()) - dist);
+        }
+        return rated;
+    }
+
+    /**
+     * Releases the states, the map must not be used afterwards.
+     */
+    @Override
+    public void close() { arena.close(); }
+}
@@ -0,0 +1,391 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Breadth first search that keeps its layers in files instead of on the heap,
+ * so the number of states it can explore is bounded by disk rather than
+ * memory. Only a fixed number of states are ever held in memory at once.
+ * <p>
+ * Every state reachable from the start has the same cars, only their
+ * positions differ, so a state is stored as a record of one byte per car: its
+ * position along its lane. Each layer is a file of sorted, unique records. To
+ * build the next layer the current one is read sequentially and expanded, the
+ * successors are sorted and spilled to run files whenever the buffer fills,
+ * and the runs are then merged, dropping duplicates and anything in the
+ * current or previous layer. Moves can always be undone so no other layer can
+ * hold a successor.
+ * <p>
+ * The files are deleted by {@link #close()}.
+ */
+public class ExternalSearch implements AutoCloseable {
+    /**
+     * The default number of states held in memory before spilling a run.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final State start;
+    private final IntRect boardRect;
+    private final IntVec goal;
+    private final Car[] cars;
+    /**
+     * The length of a record in bytes, one per car.
+     */
+    private final int recLen;
+    /**
+     * The goal car's position along its lane when it is in the goal.
+     */
+    private final int goalPos;
+    private final Path dir;
+    private final int bufferSize;
+    /**
+     * The file of each layer found so far, layer {@code d} being the states
+     * {@code d} moves from the start.
+     */
+    private final List<Path> layers = new ArrayList<>();
+    private int runs;
+
+    /**
+     * @param start the state to search from
+     * @param dir the directory to keep the layer files in
+     * @param bufferSize the most states to hold in memory at once
+     * @throws IOException if the first layer could not be written
+     */
+    public ExternalSearch(State start, Path dir, int bufferSize) throws IOException {
+        if (255 < Math.max(start.getBoardRect().getW(), start.getBoardRect().getH())) {
+            throw new IllegalArgumentException("boards are limited to 255 cells a side");
+        }
+        this.start = start;
+        this.boardRect = start.getBoardRect();
+        this.goal = start.getGoalRect().getPos();
+        this.cars = new Car[start.getNumCars()];
+        for (int i = 0; i < cars.length; i++) cars[i] = start.getCar(i);
+        this.recLen = cars.length;
+        this.goalPos = lanePos(cars[cars.length - 1], goal);
+        this.dir = Files.createTempDirectory(dir, "bfs");
+        this.bufferSize = bufferSize;
+
+        byte[] first = encode(start);
+        Path layer0 = layerPath(0);
+        try (OutputStream out = Files.newOutputStream(layer0)) {
+            out.write(first);
+        }
+        layers.add(layer0);
+    }
+
+    /**
+     * @param c a car
+     * @param p a position
+     * @return the coordinate of {@code p} along {@code c}'s lane
+     */
+    private static int lanePos(Car c, IntVec p) {
+        return c.getDirection().equals(Car.DOWN) ? p.getY() : p.getX();
+    }
+
+    private byte[] encode(State s) {
+        byte[] rec = new byte[recLen];
+        for (int i = 0; i < recLen; i++) rec[i] = (byte) lanePos(cars[i], s.getCar(i).getRect().getPos());
+        return rec;
+    }
+
+    private State decode(byte[] rec) {
+        Car[] cs = new Car[recLen];
+        for (int i = 0; i < recLen; i++) {
+            IntRect r = cars[i].getRect();
+            int p = rec[i] & 0xff;
+            IntVec pos = cars[i].getDirection().equals(Car.DOWN) ? new IntVec(r.getX(), p) : new IntVec(p, r.getY());
+            cs[i] = new Car(new IntRect(pos, r.getSize()), cars[i].getDirection());
+        }
+        return new State(boardRect, goal, cs);
+    }
+
+    private boolean isWon(byte[] rec) {
+        return (rec[recLen - 1] & 0xff) == goalPos;
+    }
+
+    private Path layerPath(int d) {
+        return dir.resolve("layer" + d);
+    }
+
+    /**
+     * @return the number of layers found so far
+     */
+    public int getDepth() { return layers.size(); }
+
+    /**
+     * @param d the layer
+     * @return the number of states {@code d} moves from the start
+     * @throws IOException if the layer's file could not be read
+     */
+    public long getLayerSize(int d) throws IOException {
+        return Files.size(layers.get(d)) / recLen;
+    }
+
+    /**
+     * Builds the next layer from the last one.
+     * @return whether the new layer has any states in it
+     * @throws IOException if the layer files could not be read or written
+     */
+    public boolean expandLayer() throws IOException {
+        int d = layers.size() - 1;
+        List<Path> runFiles = new ArrayList<>();
+        ArrayList<byte[]> buffer = new ArrayList<>();
+
+        try (RecordReader in = new RecordReader(layers.get(d))) {
+            byte[] rec;
+            while ((rec = in.next()) != null) {
+                byte[] from = rec;
+                decode(from).forEachMove((carI, delta) -> {
+                    byte[] next = from.clone();
+                    next[carI] += delta;
+                    buffer.add(next);
+                    return true;
+                });
+                if (bufferSize <= buffer.size()) {
+                    runFiles.add(spill(buffer));
+                    buffer.clear();
+                }
+            }
+        }
+        if (!buffer.isEmpty()) runFiles.add(spill(buffer));
+
+        Path next = layerPath(d + 1);
+        mergeRuns(runFiles, (d == 0) ? null : layers.get(d - 1), layers.get(d), next);
+        for (Path run : runFiles) Files.delete(run);
+        if (Files.size(next) == 0) {
+            Files.delete(next);
+            return false;
+        }
+        layers.add(next);
+        return true;
+    }
+
+    /**
+     * Sorts {@code buffer} and writes it, without duplicates, to a new run file.
+     */
+    private Path spill(ArrayList<byte[]> buffer) throws IOException {
+        buffer.sort(Arrays::compareUnsigned);
+        Path run = dir.resolve("run" + runs++);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(run))) {
+            byte[] last = null;
+            for (byte[] rec : buffer) {
+                if (last != null && Arrays.equals(last, rec)) continue;
+                out.write(rec);
+                last = rec;
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges the sorted {@code runFiles} into {@code out}, without duplicates or
+     * anything in {@code prev} or {@code curr}.
+     */
+    private void mergeRuns(List<Path> runFiles, Path prev, Path curr, Path out) throws IOException {
+        List<RecordReader> readers = new ArrayList<>();
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(out));
+             RecordReader prevIn = (prev == null) ? null : new RecordReader(prev);
+             RecordReader currIn = new RecordReader(curr)) {
+            PriorityQueue<RecordReader> heap = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.head, b.head));
+            for (Path run : runFiles) {
+                RecordReader r = new RecordReader(run);
+                readers.add(r);
+                if (r.next() != null) heap.add(r);
+            }
+            byte[] last = null;
+            while (!heap.isEmpty()) {
+                RecordReader r = heap.poll();
+                byte[] rec = r.head;
+                if (r.next() != null) heap.add(r);
+                if (last != null && Arrays.equals(last, rec)) continue;
+                last = rec;
+                if ((prevIn != null && prevIn.skipTo(rec)) || currIn.skipTo(rec)) continue;
+                os.write(rec);
+            }
+        } finally {
+            for (RecordReader r : readers) r.close();
+        }
+    }
+
+    /**
+     * Expands layers until every reachable state has been found.
+     * @return the number of states at each distance from the start
+     * @throws IOException if the layer files could not be read or written
+     */
+    public long[] explore() throws IOException {
+        while (expandLayer());
+        long[] sizes = new long[layers.size()];
+        for (int d = 0; d < sizes.length; d++) sizes[d] = getLayerSize(d);
+        return sizes;
+    }
+
+    /**
+     * @return the states furthest from the start, once {@link #explore()} has
+     *         finished
+     * @throws IOException if the last layer could not be read
+     */
+    public List<State> getFurthestStates() throws IOException {
+        List<State> states = new ArrayList<>();
+        try (RecordReader in = new RecordReader(layers.get(layers.size() - 1))) {
+            byte[] rec;
+            while ((rec = in.next()) != null) states.add(decode(rec));
+        }
+        return states;
+    }
+
+    /**
+     * Expands layers until one holds a won state, then walks back through the
+     * layers to find the moves leading to it.
+     * @return the moves solving the start state, or {@code null} if it cannot
+     *         be solved
+     * @throws IOException if the layer files could not be read or written
+     */
+    public State.Move[] solve() throws IOException {
+        byte[] won = findWon(layers.size() - 1);
+        while (won == null && expandLayer()) {
+            won = findWon(layers.size() - 1);
+        }
+        if (won == null) return null;
+
+        /* Walk back: each state has a neighbour in the layer before it */
+        int depth = layers.size() - 1;
+        ArrayDeque<int[]> path = new ArrayDeque<>();
+        byte[] curr = won;
+        for (int d = depth - 1; d >= 0; d--) {
+            byte[][] prev = new byte[1][];
+            int[] move = new int[2];
+            try (FileChannel layer = FileChannel.open(layers.get(d), StandardOpenOption.READ)) {
+                byte[] from = curr;
+                decode(from).forEachMove((carI, delta) -> {
+                    byte[] p = from.clone();
+                    p[carI] += delta;
+                    if (!contains(layer, p)) return true;
+                    prev[0] = p;
+                    move[0] = carI;
+                    move[1] = -delta;
+                    return false;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            path.addFirst(move);
+            curr = prev[0];
+        }
+
+        State.Move[] solution = new State.Move[depth];
+        State s = start;
+        for (int i = 0; i < depth; i++) {
+            int[] m = path.removeFirst();
+            s = s.successor(m[0], m[1]);
+            solution[i] = new State.Move(m[0], m[1], s);
+        }
+        return solution;
+    }
+
+    /**
+     * @return the first won state in layer {@code d} or {@code null}
+     */
+    private byte[] findWon(int d) throws IOException {
+        try (RecordReader in = new RecordReader(layers.get(d))) {
+            byte[] rec;
+            while ((rec = in.next()) != null) {
+                if (isWon(rec)) return rec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Binary search of a layer file, reading single records at their positions.
+     */
+    private boolean contains(FileChannel layer, byte[] rec) {
+        try {
+            long lo = 0, hi = layer.size() / recLen - 1;
+            ByteBuffer buf = ByteBuffer.allocate(recLen);
+            while (lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                buf.clear();
+                while (buf.hasRemaining() && 0 <= layer.read(buf, mid * recLen + buf.position()));
+                int cmp = Arrays.compareUnsigned(buf.array(), rec);
+                if (cmp == 0) return true;
+                if (cmp < 0) lo = mid + 1;
+                else hi = mid - 1;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes the layer files.
+     * @throws IOException if they could not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path layer : layers) Files.deleteIfExists(layer);
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * Reads a file of sorted records sequentially.
+     */
+    private class RecordReader implements AutoCloseable {
+        private final DataInputStream in;
+        /**
+         * The record last read, {@code null} once the file is finished.
+         */
+        byte[] head;
+
+        RecordReader(Path path) throws IOException {
+            InputStream is = Files.newInputStream(path);
+            in = new DataInputStream(new BufferedInputStream(is, 1 << 16));
+        }
+
+        /**
+         * @return the next record or {@code null} at the end of the file
+         */
+        byte[] next() throws IOException {
+            byte[] rec = new byte[recLen];
+            try {
+                in.readFully(rec);
+                head = rec;
+            } catch (EOFException e) {
+                head = null;
+            }
+            return head;
+        }
+
+        /**
+         * Reads forward past every record less than {@code rec}.
+         * @return whether the file holds {@code rec}
+         */
+        boolean skipTo(byte[] rec) throws IOException {
+            if (head == null && next() == null) return false;
+            while (head != null && Arrays.compareUnsigned(head, rec) < 0) next();
+            return head != null && Arrays.equals(head, rec);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How well a game was played: the number of moves to the goal from every
+ * state the player went through, looked up in a single {@link DistanceMap} of
+ * the starting state's component instead of solving each state on its own.
+ * Every state played is reachable from the starting state, so one map covers
+ * the whole game.
+ */
+public class GameAnalysis {
+    /**
+     * The number of moves to the goal from each state played, in order, or
+     * {@link DistanceMap#UNSOLVABLE}.
+     */
+    private final int[] distances;
+    /**
+     * The moves, numbered from 1, that did not bring the goal any closer.
+     */
+    private final List<Integer> deviations;
+
+    /**
+     * Analyses the states played so far in {@code game}. Explores the
+     * starting state's whole component, so it is best run off the JavaFX
+     * thread.
+     * @param game the game to analyse
+     */
+    public GameAnalysis(GameState game) {
+        List<State> played = game.getPlayedStates();
+        distances = new int[played.size()];
+        try (DistanceMap map = new DistanceMap(played.get(0))) {
+            for (int i = 0; i < distances.length; i++) distances[i] = map.getDistance(played.get(i));
+        }
+        List<Integer> deviations = new ArrayList<>();
+        for (int i = 1; i < distances.length; i++) {
+            if (distances[i] != distances[i-1] - 1) deviations.add(i);
+        }
+        this.deviations = Collections.unmodifiableList(deviations);
+    }
+
+    /**
+     * @param move the number of moves made, from 0 to {@link #getMovesMade()}
+     * @return the number of moves to the goal after {@code move} moves, or
+     *         {@link DistanceMap#UNSOLVABLE}
+     */
+    public int getDistance(int move) { return distances[move]; }
+
+    /**
+     * @return the number of moves the player made
+     */
+    public int getMovesMade() { return distances.length - 1; }
+
+    /**
+     * @return the fewest moves the starting state could be solved in, or
+     *         {@link DistanceMap#UNSOLVABLE}
+     */
+    public int getOptimalMoves() { return distances[0]; }
+
+    /**
+     * @return how many fewer moves the goal is now than at the start
+     */
+    private int getProgress() {
+        return (distances[0] == DistanceMap.UNSOLVABLE) ? 0 : distances[0] - distances[distances.length-1];
+    }
+
+    /**
+     * @return the moves made beyond the fewest that would have got as close
+     *         to the goal, 0 if every move was optimal
+     */
+    public int getWastedMoves() { return getMovesMade() - getProgress(); }
+
+    /**
+     * @return the moves, numbered from 1, where the player left an optimal
+     *         path: those after which the goal was not one move closer
+     */
+    public List<Integer> getDeviations() { return deviations; }
+
+    /**
+     * @return the fewest moves that would have got as close to the goal
+     *         divided by the moves made, 1 if no moves were made
+     */
+    public double getEfficiency() {
+        return (getMovesMade() == 0) ? 1 : (double) getProgress() / getMovesMade();
+    }
+
+    @Override
+    public String toString() {
+        return "Made " + getMovesMade() + " moves, the best is " + getOptimalMoves() + " (" + getWastedMoves() + " wasted, "
+                + Math.round(getEfficiency() * 100) + "% efficient), left the optimal path at moves " + deviations;
+    }
+}
@@ -2,18 +2,17 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
 
-import javafx.beans.Observable;
-import javafx.scene.paint.Color;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 /**
  * Represents an entire game (including history).
  */
-public class GameState extends java.util.Observable {
+public class GameState {
     /**
      * The history of the game;
      */
@@ -45,7 +44,7 @@ public class GameState extends java.util.Observable {
         System.out.println("Start creation of GameState");
     
         this.states = new ArrayList<>();
-        this.states.add(startingState);
+        this.states.add(startingState.intern());
         this.currState = 0;
         
         System.out.println("GameState Created");
@@ -56,10 +55,19 @@ public class GameState extends java.util.Observable {
      * @return the current state
      */
     public State getCurrentState() { return states.get(currState); }
+    /**
+     * @return the state the game started from
+     */
+    public State getStartingState() { return states.get(0); }
     /**
      * @return the current move
      */
     public int getMoveNumber() { return currState; }
+    /**
+     * @return the states played so far, from the starting state through to
+     *         the current one (without any redo history)
+     */
+    public List<State> getPlayedStates() { return Collections.unmodifiableList(states.subList(0, currState+1)); }
     
     /**
      * @return a hint, if any
@@ -104,12 +112,23 @@ public class GameState extends java.util.Observable {
      * @param to the cell to move to
      * @return the new game state or null on invalid move
      */
-    public GameState withMove(IntVec from, IntVec to) {
-        State newState = getCurrentState().withMove(from, to);
+    public GameState withMove(IntVec from, IntVec to) { return withNewState(getCurrentState().withMove(from, to)); }
+    /**
+     * Tries to construct a new game state with {@code move} made.
+     * @param move the move to make
+     * @return the new game state or null on invalid move
+     */
+    public GameState withMove(State.Move move) { return withNewState(getCurrentState().withMove(move)); }
+    /**
+     * @param newState the state to add after the current one, dropping any
+     *                 redo history
+     * @return the new game state or null if {@code newState} is {@code null}
+     */
+    private GameState withNewState(State newState) {
         if (newState == null) return null;
     
         ArrayList<State> newStates = new ArrayList<>(states.subList(0, currState+1));
-        newStates.add(newState);
+        newStates.add(newState.intern());
 
         return new GameState(newStates, currState+1, null);
     }
@@ -119,7 +138,7 @@ public class GameState extends java.util.Observable {
      */
     public GameState withHint() {
         State.Move[] solution = getCurrentState().solve();
-        if (solution.length < 1) return null;
+        if (solution == null || solution.length < 1) return null;
         
         return new GameState(states, currState, solution[0]);
     }
@@ -153,6 +172,9 @@ public class GameState extends java.util.Observable {
      */
     public static GameState fromJson(JSONObject o) {
         JSONObject hint = (JSONObject) o.get(HINT_KEY);
-        return new GameState(Arrays.asList(State.arrayFromJson((JSONArray) o.get(STATES_KEY))), ((Long) o.get(CURRSTATE_KEY)).intValue(), (hint == null) ? null : State.Move.fromJson(hint));
+        State[] states = State.arrayFromJson((JSONArray) o.get(STATES_KEY));
+        /* A history often goes back and forth over the same positions */
+        for (int i = 0; i < states.length; i++) states[i] = states[i].intern();
+        return new GameState(Arrays.asList(states), ((Long) o.get(CURRSTATE_KEY)).intValue(), (hint == null) ? null : State.Move.fromJson(hint));
     }
 }
@@ -2,7 +2,20 @@ package model;
 
 import org.json.simple.JSONObject;
 
+import java.time.Duration;
+import java.util.EnumSet;
+
 public class Model {
+    /**
+     * The longest we wait for a new level to be generated.
+     */
+    private static final Duration GENERATION_BUDGET = Duration.ofSeconds(3);
+    
+    /**
+     * The parts of a model, used to tell views which of them changed.
+     */
+    public enum Field { GAME_STATE, SETTINGS, LEVEL }
+    
     /**
      * The generator to generate states.
      */
@@ -54,6 +67,22 @@ public class Model {
      */
     public int getLevel() { return level; }
     
+    /**
+     * Models are immutable and the {@code with} methods share the parts they
+     * do not change, so comparing references is enough.
+     * @param old the model this one replaced, may be {@code null}
+     * @return the fields that differ between {@code old} and this model, all
+     *         of them if {@code old} is {@code null}
+     */
+    public EnumSet<Field> changedFrom(Model old) {
+        if (old == null) return EnumSet.allOf(Field.class);
+        EnumSet<Field> changed = EnumSet.noneOf(Field.class);
+        if (gameState != old.gameState) changed.add(Field.GAME_STATE);
+        if (settings != old.settings) changed.add(Field.SETTINGS);
+        if (level != old.level) changed.add(Field.LEVEL);
+        return changed;
+    }
+    
     
     
     /**
@@ -111,6 +140,12 @@ public class Model {
      *         {@code to}) (if it is valid to do so) else {@code null}
      */
     public Model withGameStateMove(IntVec from, IntVec to) { return withGameState(gameState.withMove(from, to)); }
+    /**
+     * @param move the move to make
+     * @return a copy of the current model after {@code move} (if it is valid
+     *         to do so) else {@code null}
+     */
+    public Model withGameStateMove(State.Move move) { return withGameState(gameState.withMove(move)); }
     /**
      * @return a copy of the current model with a hint (if it is valid to do so)
      *         else {@code null}
@@ -121,7 +156,7 @@ public class Model {
      * @param level the new level
      * @return a copy of the current model with a new game for the new level
      */
-    private Model withLevel(int level) { return withNew(new GameState(generator.generate(level)), settings, level); }
+    private Model withLevel(int level) { return withNew(new GameState(generator.generate(level, GENERATION_BUDGET)), settings, level); }
     /**
      * @return a copy of the current model with a new game for level 1
      */
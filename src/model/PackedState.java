@@ -0,0 +1,71 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A compact, exact key for a {@link State}: the board and goal take one
+ * {@code int} each and every car one more, packing its position, size and
+ * direction. Unlike {@link State#equals(Object)}, which only compares car
+ * positions, two packed states are only equal if they are the same board in
+ * every respect, so they can be shared between unrelated searches.
+ */
+public final class PackedState {
+    /**
+     * The board rect, the goal and then one int per car.
+     */
+    private final int[] data;
+    /**
+     * Cached hash of {@link #data}.
+     */
+    private final int hash;
+
+    /**
+     * @param data the packed ints, not copied
+     */
+    private PackedState(int[] data) {
+        this.data = data;
+        this.hash = Arrays.hashCode(data);
+    }
+
+    /**
+     * @param s the state to pack
+     * @return the packed key of {@code s}
+     */
+    public static PackedState of(State s) {
+        int[] data = new int[2 + s.getNumCars()];
+        IntRect b = s.getBoardRect();
+        data[0] = (b.getX() & 0xff) << 24 | (b.getY() & 0xff) << 16 | (b.getW() & 0xff) << 8 | (b.getH() & 0xff);
+        IntVec goal = s.getGoalRect().getPos();
+        data[1] = (goal.getX() & 0xffff) << 16 | (goal.getY() & 0xffff);
+        for (int i = 0; i < s.getNumCars(); i++) {
+            data[2 + i] = packCar(s.getCar(i));
+        }
+        return new PackedState(data);
+    }
+
+    /**
+     * @param c the car to pack
+     * @return 8 bits each of x and y, 7 bits each of width and height and a
+     *         bit set if the car is vertical
+     */
+    static int packCar(Car c) {
+        IntRect r = c.getRect();
+        return (r.getX() & 0xff) << 23 | (r.getY() & 0xff) << 15 | (r.getW() & 0x7f) << 8 | (r.getH() & 0x7f) << 1 | (c.getDirection().equals(Car.DOWN) ? 1 : 0);
+    }
+
+    /**
+     * @return the number of cars in the packed state
+     */
+    public int getNumCars() { return data.length - 2; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedState)) return false;
+        PackedState p = (PackedState) o;
+        return hash == p.hash && Arrays.equals(data, p.data);
+    }
+
+    @Override
+    public int hashCode() { return hash; }
+}
@@ -0,0 +1,237 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * A pattern database: the exact number of moves to the goal of every
+ * arrangement of the goal car and a chosen subset of the other cars, as if the
+ * cars not in the subset were not on the board. Taking cars away can only
+ * make the puzzle easier, so a lookup is a lower bound on the real distance.
+ * <p>
+ * Moves of the goal car can be made free so that databases over disjoint
+ * subsets of the other cars can be added together: each move of the real
+ * puzzle is then paid for in at most one of them, so the sum is still a
+ * lower bound.
+ * <p>
+ * Arrangements are numbered by the cars' positions along their lanes in mixed
+ * radix, and each distance takes one byte.
+ */
+final class PatternDatabase {
+    /**
+     * The distance of an arrangement the goal cannot be reached from, or that
+     * cannot happen.
+     */
+    static final int UNREACHABLE = 0xff;
+
+    /**
+     * A description of the layout the database was built for, two databases
+     * with the same key are the same.
+     */
+    private final String key;
+    /**
+     * The index in the full state of each car in the pattern, the goal car
+     * last.
+     */
+    private final int[] carIs;
+    /**
+     * The value of one step along each car's lane in an arrangement's index.
+     */
+    private final int[] mult;
+    private final byte[] dist;
+
+    private PatternDatabase(String key, int[] carIs, int[] mult, byte[] dist) {
+        this.key = key;
+        this.carIs = carIs;
+        this.mult = mult;
+        this.dist = dist;
+    }
+
+    /**
+     * @param template a state with the cars of the layout
+     * @param carIs the indices of the cars in the pattern, the goal car last
+     * @param goalCarCosts whether moving the goal car counts as a move
+     * @return a string identifying the database for the layout
+     */
+    static String keyFor(State template, int[] carIs, boolean goalCarCosts) {
+        IntRect b = template.getBoardRect();
+        StringBuilder sb = new StringBuilder();
+        sb.append(b.getW()).append('x').append(b.getH()).append(' ').append(template.getGoalRect().getPos()).append(goalCarCosts ? " paid" : " free");
+        for (int carI : carIs) {
+            Car c = template.getCar(carI);
+            IntRect r = c.getRect();
+            boolean down = c.getDirection().equals(Car.DOWN);
+            sb.append(down ? " v" : " h").append(down ? r.getX() : r.getY()).append(':').append(down ? r.getH() : r.getW());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of arrangements a database over {@code carIs} has
+     */
+    static long sizeFor(State template, int[] carIs) {
+        long size = 1;
+        for (int carI : carIs) size *= radix(template, carI);
+        return size;
+    }
+
+    /**
+     * @return the number of positions the car can take along its lane
+     */
+    private static int radix(State template, int carI) {
+        Car c = template.getCar(carI);
+        IntRect b = template.getBoardRect();
+        return c.getDirection().equals(Car.DOWN) ? b.getH() - c.getRect().getH() + 1 : b.getW() - c.getRect().getW() + 1;
+    }
+
+    /**
+     * @return the key this database was built for
+     */
+    String getKey() { return key; }
+
+    /**
+     * Databases are keyed by the layout of their cars, not by where the cars
+     * come in the state, so the same one serves any state with the same
+     * lanes.
+     * @param carIs the indices of the pattern's cars in another state, in the
+     *              same order as this database's, the goal car last
+     * @return this database looking the cars up at {@code carIs}
+     */
+    PatternDatabase forCars(int[] carIs) {
+        return new PatternDatabase(key, carIs.clone(), mult, dist);
+    }
+
+    /**
+     * @param rec a state with the layout the database was built for, as a
+     *            record of a {@link StateArena}
+     * @return a lower bound on the number of moves to solve the state or
+     *         {@link #UNREACHABLE} if it cannot be solved
+     */
+    int lookup(byte[] rec) {
+        int idx = 0;
+        for (int k = 0; k < carIs.length; k++) idx += rec[carIs[k]] * mult[k];
+        return dist[idx] & 0xff;
+    }
+
+    /**
+     * Works out the distance of every arrangement with a 0-1 breadth first
+     * search backwards from every arrangement with the goal car in the goal.
+     * Moves can be undone, so backwards is the same as forwards.
+     * @param template a state with the cars of the layout
+     * @param carIs the indices of the cars in the pattern, the goal car last
+     * @param goalCarCosts whether moving the goal car counts as a move
+     * @return the database
+     */
+    static PatternDatabase build(State template, int[] carIs, boolean goalCarCosts) {
+        int n = carIs.length;
+        IntRect b = template.getBoardRect();
+        boolean[] down = new boolean[n];
+        int[] radix = new int[n], mult = new int[n], fixed = new int[n], length = new int[n];
+        int size = 1;
+        for (int k = 0; k < n; k++) {
+            Car c = template.getCar(carIs[k]);
+            down[k] = c.getDirection().equals(Car.DOWN);
+            fixed[k] = down[k] ? c.getRect().getX() : c.getRect().getY();
+            length[k] = down[k] ? c.getRect().getH() : c.getRect().getW();
+            radix[k] = radix(template, carIs[k]);
+            mult[k] = size;
+            size *= radix[k];
+        }
+        byte[] dist = new byte[size];
+        Arrays.fill(dist, (byte) UNREACHABLE);
+
+        IntVec goal = template.getGoalRect().getPos();
+        int goalK = n - 1;
+        int goalPos = down[goalK] ? goal.getY() : goal.getX();
+
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        int[] pos = new int[n];
+        boolean[] cells = new boolean[b.getW() * b.getH()];
+        for (int idx = 0; idx < size; idx++) {
+            decode(idx, radix, pos);
+            if (pos[goalK] == goalPos && fill(cells, b.getW(), pos, down, fixed, length)) {
+                dist[idx] = 0;
+                todo.add(idx);
+            }
+        }
+
+        while (!todo.isEmpty()) {
+            int idx = todo.poll();
+            int d = dist[idx] & 0xff;
+            decode(idx, radix, pos);
+            fill(cells, b.getW(), pos, down, fixed, length);
+            for (int k = 0; k < n; k++) {
+                int cost = (k == goalK && !goalCarCosts) ? 0 : 1;
+                int lane = down[k] ? b.getH() : b.getW();
+                for (int step = -1; step <= 1; step += 2) {
+                    /* The cells in front of the car in this direction */
+                    int front = (step < 0) ? pos[k] - 1 : pos[k] + length[k];
+                    for (int p = pos[k] + step; 0 <= front && front < lane; p += step, front += step) {
+                        if (cells[down[k] ? front * b.getW() + fixed[k] : fixed[k] * b.getW() + front]) break;
+                        int next = idx + (p - pos[k]) * mult[k];
+                        if (d + cost < (dist[next] & 0xff)) {
+                            dist[next] = (byte) Math.min(d + cost, UNREACHABLE - 1);
+                            if (cost == 0) todo.addFirst(next);
+                            else todo.addLast(next);
+                        }
+                    }
+                }
+            }
+        }
+        return new PatternDatabase(keyFor(template, carIs, goalCarCosts), carIs.clone(), mult, dist);
+    }
+
+    private static void decode(int idx, int[] radix, int[] pos) {
+        for (int k = 0; k < radix.length; k++) {
+            pos[k] = idx % radix[k];
+            idx /= radix[k];
+        }
+    }
+
+    /**
+     * Marks the cells covered by the cars in {@code cells}.
+     * @return whether no two cars overlap
+     */
+    private static boolean fill(boolean[] cells, int w, int[] pos, boolean[] down, int[] fixed, int[] length) {
+        Arrays.fill(cells, false);
+        for (int k = 0; k < pos.length; k++) {
+            for (int l = 0; l < length[k]; l++) {
+                int cell = down[k] ? (pos[k] + l) * w + fixed[k] : fixed[k] * w + pos[k] + l;
+                if (cells[cell]) return false;
+                cells[cell] = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the database so that {@link #read(DataInputStream)} can load it.
+     * Which cars it looks up are not written.
+     * @param out the stream to write to
+     * @throws IOException if writing failed
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeUTF(key);
+        out.writeInt(mult.length);
+        for (int m : mult) out.writeInt(m);
+        out.writeInt(dist.length);
+        out.write(dist);
+    }
+
+    /**
+     * @param in the stream to read from
+     * @return the database written by {@link #write(DataOutputStream)}
+     * @throws IOException if reading failed
+     */
+    static PatternDatabase read(DataInputStream in) throws IOException {
+        String key = in.readUTF();
+        int[] mult = new int[in.readInt()];
+        for (int k = 0; k < mult.length; k++) mult[k] = in.readInt();
+        byte[] dist = new byte[in.readInt()];
+        in.readFully(dist);
+        return new PatternDatabase(key, new int[0], mult, dist);
+    }
+}
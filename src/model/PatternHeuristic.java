@@ -0,0 +1,200 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A lower bound on the number of moves left to solve a state, for the A*
+ * search in {@link State#solveAStar()}. The cars other than the goal car are
+ * split into groups, the cars blocking the goal car's way first, each small
+ * enough for a {@link PatternDatabase} over it and the goal car. Moves of the
+ * goal car only count in the first group's database, so the databases can be
+ * added together.
+ * <p>
+ * A database only depends on the lanes and lengths of its cars, so it is built
+ * the first time a layout is seen and then kept, both in memory and in files
+ * under {@link #DIR}, for every later state and puzzle with the same layout.
+ */
+final class PatternHeuristic {
+    /**
+     * The estimate of a state that cannot be solved.
+     */
+    static final int UNSOLVABLE = Integer.MAX_VALUE;
+
+    /**
+     * The most arrangements one database may have, each takes a byte.
+     */
+    private static final long MAX_PATTERN_SIZE = 1 << 18;
+    /**
+     * The most databases kept in memory.
+     */
+    private static final int CACHE_SIZE = 64;
+    /**
+     * The directory databases are saved in, which can be set with the
+     * {@code gridlock.pdb.dir} system property.
+     */
+    private static final Path DIR = Path.of(System.getProperty("gridlock.pdb.dir",
+            Path.of(System.getProperty("java.io.tmpdir"), "gridlock-pdb").toString()));
+    /**
+     * The databases used most recently, by key.
+     */
+    private static final Map<String, PatternDatabase> CACHE = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PatternDatabase> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+
+    private final PatternDatabase[] databases;
+
+    /**
+     * @param template a state with the cars every state estimated will have
+     */
+    PatternHeuristic(State template) {
+        List<int[]> groups = groupCars(template);
+        databases = new PatternDatabase[groups.size()];
+        for (int g = 0; g < databases.length; g++) {
+            databases[g] = databaseFor(template, groups.get(g), g == 0);
+        }
+    }
+
+    /**
+     * @param rec a state with the template's cars, as a record of a
+     *            {@link StateArena}
+     * @return a lower bound on the number of moves to solve the state, or
+     *         {@link #UNSOLVABLE} if it cannot be solved
+     */
+    int estimate(byte[] rec) {
+        int sum = 0;
+        for (PatternDatabase db : databases) {
+            int d = db.lookup(rec);
+            if (d == PatternDatabase.UNREACHABLE) return UNSOLVABLE;
+            sum += d;
+        }
+        return sum;
+    }
+
+    /**
+     * Splits the cars other than the goal car into groups, taking the cars in
+     * the goal car's way first and filling each group while its database stays
+     * under {@link #MAX_PATTERN_SIZE}.
+     * @return the indices of the cars in each group, followed by the goal car
+     */
+    private static List<int[]> groupCars(State template) {
+        int goalCarI = template.getNumCars() - 1;
+        IntRect a = template.getCar(goalCarI).getRect(), b = template.getGoalRect();
+        int x = Math.min(a.getX(), b.getX()), y = Math.min(a.getY(), b.getY());
+        IntRect way = new IntRect(x, y,
+                Math.max(a.getEnd().getX(), b.getEnd().getX()) - x, Math.max(a.getEnd().getY(), b.getEnd().getY()) - y);
+
+        /* The cars in the way, then the cars in the lanes of those, and so on */
+        List<Integer> order = new ArrayList<>();
+        List<IntRect> lanes = new ArrayList<>();
+        lanes.add(way);
+        for (int l = 0; l < lanes.size(); l++) {
+            for (int i = 0; i < goalCarI; i++) {
+                Car c = template.getCar(i);
+                if (!order.contains(i) && c.getRect().intersects(lanes.get(l))) {
+                    order.add(i);
+                    lanes.add(laneOf(template, c));
+                }
+            }
+        }
+        for (int i = 0; i < goalCarI; i++) {
+            if (!order.contains(i)) order.add(i);
+        }
+
+        List<int[]> groups = new ArrayList<>();
+        List<Integer> group = new ArrayList<>();
+        for (int carI : order) {
+            group.add(carI);
+            if (group.size() > 1 && PatternDatabase.sizeFor(template, withGoalCar(group, goalCarI)) > MAX_PATTERN_SIZE) {
+                group.remove(group.size() - 1);
+                groups.add(withGoalCar(group, goalCarI));
+                group = new ArrayList<>();
+                group.add(carI);
+            }
+        }
+        if (!group.isEmpty() || groups.isEmpty()) groups.add(withGoalCar(group, goalCarI));
+        return groups;
+    }
+
+    /**
+     * @return every cell the car can cover as it slides along its lane
+     */
+    private static IntRect laneOf(State template, Car c) {
+        IntRect r = c.getRect(), b = template.getBoardRect();
+        return c.getDirection().equals(Car.DOWN) ? new IntRect(r.getX(), b.getY(), r.getW(), b.getH()) : new IntRect(b.getX(), r.getY(), b.getW(), r.getH());
+    }
+
+    private static int[] withGoalCar(List<Integer> group, int goalCarI) {
+        int[] carIs = new int[group.size() + 1];
+        for (int k = 0; k < group.size(); k++) carIs[k] = group.get(k);
+        carIs[group.size()] = goalCarI;
+        return carIs;
+    }
+
+    /**
+     * Finds the database for a group in memory, then on disk, and only builds
+     * it if it is in neither.
+     */
+    private static PatternDatabase databaseFor(State template, int[] carIs, boolean goalCarCosts) {
+        String key = PatternDatabase.keyFor(template, carIs, goalCarCosts);
+        PatternDatabase db = CACHE.get(key);
+        if (db == null) {
+            Path file = DIR.resolve(Integer.toHexString(key.hashCode()) + ".pdb");
+            db = read(file, key);
+            if (db == null) {
+                db = PatternDatabase.build(template, carIs, goalCarCosts);
+                write(file, db);
+            }
+            CACHE.put(key, db);
+        }
+        return db.forCars(carIs);
+    }
+
+    /**
+     * @return the database saved in {@code file} or {@code null} if there is
+     *         none for {@code key}
+     */
+    private static PatternDatabase read(Path file, String key) {
+        if (!Files.isRegularFile(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            PatternDatabase db = PatternDatabase.read(in);
+            /* Two keys can share a file name, the last one built wins */
+            return db.getKey().equals(key) ? db : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Saves a database, writing to a temporary file first so that a search
+     * running at the same time never reads half of one. The database still
+     * works if it cannot be saved, it just has to be built again next time.
+     */
+    private static void write(Path file, PatternDatabase db) {
+        try {
+            Files.createDirectories(DIR);
+            Path tmp = Files.createTempFile(DIR, "pdb", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                db.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
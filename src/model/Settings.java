@@ -9,7 +9,8 @@ public class Settings {
     public enum Theme {
         DEFAULT,
         DEUTERANOPE,
-        TRITANOPE
+        TRITANOPE,
+        CANVAS
     }
     /**
      * The volume the user has set from 0 to 1.
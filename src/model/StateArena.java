@@ -0,0 +1,387 @@
+package model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores the states of one search outside the Java heap, so that a search
+ * over hundreds of thousands of states leaves the garbage collector almost
+ * nothing to trace. Every state reachable from the template has the same cars,
+ * so a state is stored as one byte per car, its position along its lane,
+ * alongside the index of its parent and its distance. States are numbered in
+ * the order they were added, which for a breadth first search is also the
+ * order to expand them in, so the arena doubles as the search's queue.
+ * <p>
+ * Lookups go through an open addressing hash table, also kept off the heap.
+ * Everything is freed at once by {@link #close()}, straight away rather than
+ * whenever the buffers are collected where the JVM allows it.
+ */
+final class StateArena implements AutoCloseable {
+    /**
+     * The parent of a state added with none.
+     */
+    static final int NO_PARENT = -1;
+
+    private final IntRect boardRect;
+    private final IntVec goal;
+    private final Car[] cars;
+    /**
+     * The cars of the template at every position along their lanes, shared
+     * by all the states decoded.
+     */
+    private final Car[][] carAt;
+    private final int recLen;
+    private final int goalCarI;
+    private final int goalPos;
+    /**
+     * Whether each car is vertical, the row or column of its lane and its
+     * length, for {@link #forEachMove(byte[], State.MoveVisitor)}.
+     */
+    private final boolean[] down;
+    private final int[] lane, length;
+    /**
+     * The cells covered in the record being visited, reused between calls.
+     */
+    private final boolean[] cells;
+    /**
+     * The bits of the cells each car covers at position 0 along its lane and
+     * how far each step along the lane shifts them, or {@code null} if the
+     * board has more than 64 cells.
+     */
+    private final long[] carMasks;
+    private final int[] step;
+
+    private ByteBuffer records;
+    private IntBuffer parents, dists;
+    /**
+     * Each slot holds the index of a state plus one, or 0 if it is empty.
+     */
+    private IntBuffer table;
+    /**
+     * The buffers behind {@link #parents}, {@link #dists} and {@link #table},
+     * which are what can be freed.
+     */
+    private ByteBuffer parentsMemory, distsMemory, tableMemory;
+    private int mask;
+    private int size;
+
+    /**
+     * @param template a state with the cars every state in the arena will have
+     * @param capacity the number of states to make room for at first
+     */
+    StateArena(State template, int capacity) {
+        boardRect = template.getBoardRect();
+        goal = template.getGoalRect().getPos();
+        cars = new Car[template.getNumCars()];
+        carAt = new Car[cars.length][];
+        for (int i = 0; i < cars.length; i++) {
+            cars[i] = template.getCar(i);
+            carAt[i] = new Car[Math.max(boardRect.getW(), boardRect.getH())];
+        }
+        recLen = cars.length;
+        goalCarI = cars.length - 1;
+        /* A goal off the goal car's lane can never be reached */
+        IntRect goalCar = cars[goalCarI].getRect();
+        boolean inLane = cars[goalCarI].getDirection().equals(Car.DOWN) ? goal.getX() == goalCar.getX() : goal.getY() == goalCar.getY();
+        goalPos = inLane ? lanePos(cars[goalCarI], goal) : -1;
+        down = new boolean[cars.length];
+        lane = new int[cars.length];
+        length = new int[cars.length];
+        for (int i = 0; i < cars.length; i++) {
+            IntRect r = cars[i].getRect();
+            down[i] = cars[i].getDirection().equals(Car.DOWN);
+            lane[i] = down[i] ? r.getX() : r.getY();
+            length[i] = down[i] ? r.getH() : r.getW();
+        }
+        cells = new boolean[boardRect.getW() * boardRect.getH()];
+        step = new int[cars.length];
+        carMasks = (cells.length <= 64) ? new long[cars.length] : null;
+        for (int i = 0; i < cars.length; i++) {
+            step[i] = down[i] ? boardRect.getW() : 1;
+            for (int l = 0; carMasks != null && l < length[i]; l++) carMasks[i] |= 1L << cellAt(i, l, boardRect.getW());
+        }
+
+        capacity = Math.max(16, capacity);
+        records = ByteBuffer.allocateDirect(capacity * recLen);
+        parentsMemory = ByteBuffer.allocateDirect(capacity * 4);
+        parents = parentsMemory.asIntBuffer();
+        distsMemory = ByteBuffer.allocateDirect(capacity * 4);
+        dists = distsMemory.asIntBuffer();
+        allocateTable(Integer.highestOneBit(capacity) * 4);
+    }
+
+    private static int lanePos(Car c, IntVec p) {
+        return c.getDirection().equals(Car.DOWN) ? p.getY() : p.getX();
+    }
+
+    private void allocateTable(int slots) {
+        tableMemory = ByteBuffer.allocateDirect(slots * 4);
+        table = tableMemory.asIntBuffer();
+        mask = slots - 1;
+    }
+
+    /**
+     * @return the number of states in the arena
+     */
+    int size() { return size; }
+
+    /**
+     * @param s a state with the template's cars
+     * @return {@code s} packed into a record
+     */
+    byte[] encode(State s) {
+        byte[] rec = new byte[recLen];
+        for (int i = 0; i < recLen; i++) rec[i] = (byte) lanePos(cars[i], s.getCar(i).getRect().getPos());
+        return rec;
+    }
+
+    /**
+     * @param i the index of a state
+     * @param rec the array to copy the state's record into
+     */
+    void getRecord(int i, byte[] rec) {
+        records.get(i * recLen, rec);
+    }
+
+    /**
+     * @param i the index of a state
+     * @return the state, built on the heap
+     */
+    State getState(int i) {
+        Car[] cs = new Car[recLen];
+        for (int c = 0; c < recLen; c++) {
+            int p = records.get(i * recLen + c) & 0xff;
+            Car car = carAt[c][p];
+            if (car == null) {
+                IntRect r = cars[c].getRect();
+                IntVec pos = cars[c].getDirection().equals(Car.DOWN) ? new IntVec(r.getX(), p) : new IntVec(p, r.getY());
+                car = carAt[c][p] = new Car(new IntRect(pos, r.getSize()), cars[c].getDirection());
+            }
+            cs[c] = car;
+        }
+        return new State(Board.genFor(boardRect, cs), goal, cs);
+    }
+
+    /**
+     * Calls {@code v} for every legal move from a record, in the same order as
+     * {@link State#forEachMove(State.MoveVisitor)}, without building the
+     * state. Only works for cars one cell wide, like every car the game makes.
+     * <p>
+     * Boards of up to 64 cells keep which cells are covered as the bits of one
+     * {@code long}, so marking a car is one OR of its precomputed mask shifted
+     * into place and testing a cell is one AND, with nothing to clear between
+     * records.
+     * @param rec the record
+     * @param v the visitor to call for each move
+     */
+    void forEachMove(byte[] rec, State.MoveVisitor v) {
+        if (carMasks == null) {
+            forEachMoveCells(rec, v);
+            return;
+        }
+        long covered = 0;
+        for (int i = 0; i < recLen; i++) covered |= carMasks[i] << (rec[i] * step[i]);
+        for (int i = 0; i < recLen; i++) {
+            int laneLen = down[i] ? boardRect.getH() : boardRect.getW();
+            /* The bit of the cell p along the car's lane is first + p * step */
+            int first = down[i] ? lane[i] : lane[i] * boardRect.getW();
+            for (int d = 1, p = rec[i] + length[i]; p < laneLen && (covered & 1L << (first + p * step[i])) == 0; d++, p++) {
+                if (!v.visit(i, d)) return;
+            }
+            for (int d = -1, p = rec[i] - 1; 0 <= p && (covered & 1L << (first + p * step[i])) == 0; d--, p--) {
+                if (!v.visit(i, d)) return;
+            }
+        }
+    }
+
+    /**
+     * {@link #forEachMove(byte[], State.MoveVisitor)} for boards too big for
+     * a {@code long}, marking covered cells in {@link #cells}.
+     */
+    private void forEachMoveCells(byte[] rec, State.MoveVisitor v) {
+        int w = boardRect.getW();
+        Arrays.fill(cells, false);
+        for (int i = 0; i < recLen; i++) {
+            for (int l = 0; l < length[i]; l++) cells[cellAt(i, rec[i] + l, w)] = true;
+        }
+        for (int i = 0; i < recLen; i++) {
+            int laneLen = down[i] ? boardRect.getH() : w;
+            for (int d = 1; rec[i] + length[i] - 1 + d < laneLen && !cells[cellAt(i, rec[i] + length[i] - 1 + d, w)]; d++) {
+                if (!v.visit(i, d)) return;
+            }
+            for (int d = -1; 0 <= rec[i] + d && !cells[cellAt(i, rec[i] + d, w)]; d--) {
+                if (!v.visit(i, d)) return;
+            }
+        }
+    }
+
+    /**
+     * @return the index in {@link #cells} of the cell {@code p} along car
+     *         {@code i}'s lane
+     */
+    private int cellAt(int i, int p, int w) {
+        return down[i] ? p * w + lane[i] : lane[i] * w + p;
+    }
+
+    /**
+     * @param rec a record
+     * @return whether the goal car is in the goal in {@code rec}
+     */
+    boolean isWon(byte[] rec) { return (rec[goalCarI] & 0xff) == goalPos; }
+
+    int getParent(int i) { return parents.get(i); }
+    int getDist(int i) { return dists.get(i); }
+
+    /**
+     * Records a shorter way to a state already in the arena.
+     * @param i the index of the state
+     * @param parent the index of the state it is now reached from
+     * @param dist its new distance
+     */
+    void setParent(int i, int parent, int dist) {
+        parents.put(i, parent);
+        dists.put(i, dist);
+    }
+
+    private static int hash(byte[] rec) {
+        int h = 1;
+        for (byte b : rec) h = 31 * h + b;
+        /* Positions are small numbers, so spread them over every bit before masking */
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean recordEquals(int i, byte[] rec) {
+        int base = i * recLen;
+        for (int c = 0; c < recLen; c++) {
+            if (records.get(base + c) != rec[c]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param rec a record
+     * @return the index of the state or -1 if it is not in the arena
+     */
+    int find(byte[] rec) {
+        for (int slot = hash(rec) & mask; ; slot = (slot + 1) & mask) {
+            int v = table.get(slot);
+            if (v == 0) return -1;
+            if (recordEquals(v - 1, rec)) return v - 1;
+        }
+    }
+
+    /**
+     * Adds a state if it is not already in the arena.
+     * @param rec the state's record
+     * @param parent the index of the state it was reached from or
+     *               {@link #NO_PARENT}
+     * @param dist its distance
+     * @return the index of the new state or, if it was already there, minus
+     *         its index minus one
+     */
+    int add(byte[] rec, int parent, int dist) {
+        int slot = hash(rec) & mask;
+        for (int v; (v = table.get(slot)) != 0; slot = (slot + 1) & mask) {
+            if (recordEquals(v - 1, rec)) return -v;
+        }
+        if (size == parents.capacity()) {
+            grow();
+            return add(rec, parent, dist);
+        }
+        int i = size++;
+        /* A loop beats the bulk put for records this short */
+        for (int c = 0; c < recLen; c++) records.put(i * recLen + c, rec[c]);
+        parents.put(i, parent);
+        dists.put(i, dist);
+        table.put(slot, i + 1);
+        return i;
+    }
+
+    /**
+     * Doubles the room for states, and the hash table with it so it stays at
+     * most half full.
+     */
+    private void grow() {
+        int capacity = parents.capacity() * 2;
+        ByteBuffer newRecords = ByteBuffer.allocateDirect(capacity * recLen);
+        newRecords.put(0, records, 0, size * recLen);
+        ByteBuffer newParents = ByteBuffer.allocateDirect(capacity * 4);
+        newParents.asIntBuffer().put(0, parents, 0, size);
+        ByteBuffer newDists = ByteBuffer.allocateDirect(capacity * 4);
+        newDists.asIntBuffer().put(0, dists, 0, size);
+        free(records);
+        free(parentsMemory);
+        free(distsMemory);
+        free(tableMemory);
+        records = newRecords;
+        parentsMemory = newParents;
+        parents = newParents.asIntBuffer();
+        distsMemory = newDists;
+        dists = newDists.asIntBuffer();
+
+        allocateTable(table.capacity() * 2);
+        byte[] rec = new byte[recLen];
+        for (int i = 0; i < size; i++) {
+            getRecord(i, rec);
+            int slot = hash(rec) & mask;
+            while (table.get(slot) != 0) slot = (slot + 1) & mask;
+            table.put(slot, i + 1);
+        }
+    }
+
+    /**
+     * Frees every buffer at once, the arena must not be used afterwards. On a
+     * JVM that does not allow freeing direct buffers the memory is returned
+     * when the buffers are collected instead.
+     */
+    @Override
+    public void close() {
+        free(records);
+        free(parentsMemory);
+        free(distsMemory);
+        free(tableMemory);
+        /* Any use after this fails on these rather than reading freed memory */
+        records = parentsMemory = distsMemory = tableMemory = null;
+        parents = dists = table = null;
+    }
+
+    /**
+     * {@code sun.misc.Unsafe.invokeCleaner}, bound to the instance, or
+     * {@code null} if this JVM does not have it.
+     */
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Frees the memory of a direct buffer now, rather than when it is
+     * collected, if the JVM allows it. Nothing may use the buffer afterwards.
+     * @param b a buffer from {@link ByteBuffer#allocateDirect(int)}, not a
+     *          view of one
+     */
+    private static void free(ByteBuffer b) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact(b);
+        } catch (Throwable e) {
+            /* Then it is returned when collected, as without the cleaner */
+        }
+    }
+}
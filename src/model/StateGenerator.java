@@ -1,9 +1,14 @@
 package model;
 
-import java.util.ArrayDeque;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Queue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class StateGenerator {
     
@@ -17,28 +22,23 @@ public class StateGenerator {
     private final static IntVec GOAL = new IntVec(4, 2);
     
     /**
-     * Find's the {@code n}th valid position to insert a rectangle of dimensions
-     * {@code size} at.
+     * Finds every valid position to insert a rectangle of dimensions
+     * {@code size} at, in row-major order, in a single scan of the board.
      * @param b the board to look through
      * @param size the size of the rect to insert
-     * @param n which position to find
-     * @return the {@code n}th valid position on the board or {@code null} if
-     *         none exists.
+     * @return the valid positions on the board
      */
-    private static IntVec findNthValidPosition(Board b, IntVec size, int n) {
-        for (int y = 0; y < b.getRect().getH(); y++) {
-            for (int x = 0; x < b.getRect().getW(); x++) {
+    private static ArrayList<IntVec> findValidPositions(Board b, IntVec size) {
+        ArrayList<IntVec> positions = new ArrayList<>();
+        for (int y = 0; y + size.getY() <= b.getRect().getH(); y++) {
+            for (int x = 0; x + size.getX() <= b.getRect().getW(); x++) {
                 IntVec p = new IntVec(x, y);
-                IntRect r = new IntRect(p, size);
-                if (b.getRect().contains(r) &&  b.allNone(r)) {
-                    if (n == 0) {
-                        return p;
-                    }
-                    n--;
+                if (b.allNone(new IntRect(p, size))) {
+                    positions.add(p);
                 }
             }
         }
-        return null;
+        return positions;
     }
     /**
      * @param boardRect the size of the board
@@ -57,10 +57,12 @@ public class StateGenerator {
         for (int i = 0; i < nCars; i++) {
             int length = (int) (2 + 2*Math.random());
             IntVec dir = (Math.random() < 0.5) ? Car.RIGHT : Car.DOWN;
-            IntVec size = (dir == Car.DOWN) ? (new IntVec(1, length)) : (new IntVec(length, 1));
-            IntVec pos = findNthValidPosition(board, size, (int) (boardCellsLeft * Math.random() / 4));
+            IntVec size = carSize(length, dir);
+            ArrayList<IntVec> positions = findValidPositions(board, size);
+            int n = (int) (boardCellsLeft * Math.random() / 4);
 
-            if (pos != null) {
+            if (n < positions.size()) {
+                IntVec pos = positions.get(n);
                 IntRect rect = new IntRect(pos, size);
                 Car c = new Car(rect, dir);
                 cars.add(c);
@@ -96,98 +98,322 @@ public class StateGenerator {
             this.dist = dist;
         }
     }
+    /**
+     * The number of components {@link #FURTHEST_CACHE} remembers.
+     */
+    private static final int FURTHEST_CACHE_SIZE = 512;
+    /**
+     * The results of {@link #calculateFurthestState(State, long)} for recently
+     * explored components, keyed by {@link #layoutSignature(State)} of the
+     * smallest finished state the search started from, least recently used
+     * first.
+     */
+    private static final Map<List<IntRect>, FurthestStateResult> FURTHEST_CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<List<IntRect>, FurthestStateResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<IntRect>, FurthestStateResult> eldest) {
+                return FURTHEST_CACHE_SIZE < size();
+            }
+        }
+    );
+    /**
+     * @param s the state
+     * @return the rects of the cars in {@code s}, sorted so that the order of
+     *         the cars does not matter, followed by the goal car's rect
+     */
+    private static List<IntRect> layoutSignature(State s) {
+        ArrayList<IntRect> rects = new ArrayList<>();
+        for (int i = 0; i < s.getNumCars()-1; i++) rects.add(s.getCar(i).getRect());
+        Collections.sort(rects);
+        rects.add(s.getCar(s.getNumCars()-1).getRect());
+        return rects;
+    }
+    /**
+     * Orders layout signatures of the same length lexicographically.
+     * @param a a signature
+     * @param b another signature
+     * @return negative if ({@code a < b}), positive if ({@code a > b}) and zero
+     *         otherwise
+     */
+    private static int compareSignatures(List<IntRect> a, List<IntRect> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int cmp = a.get(i).compareTo(b.get(i));
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+    
+    /**
+     * Represents having no deadline.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    /**
+     * The number of states {@link #calculateFurthestState(State, long)} makes
+     * room for up front, enough for most components.
+     */
+    private static final int ARENA_CAPACITY = 1 << 14;
+    /**
+     * @param deadline the deadline in {@link System#nanoTime()} time or
+     *                 {@link #NO_DEADLINE}
+     * @return whether the deadline has passed
+     */
+    private static boolean isPast(long deadline) {
+        return deadline != NO_DEADLINE && 0 < System.nanoTime() - deadline;
+    }
+    
     /**
      * Given a starting state, finds the furthest state (in approximately the
-     * number of moves from a given state.
+     * number of moves from a given state. If the deadline passes part way
+     * through, the furthest state found so far is returned.
+     * <p>
+     * The finished states connected to {@code start} are always explored
+     * first. The smallest of their layout signatures identifies the component,
+     * so a component that was fully explored recently is answered from
+     * {@link #FURTHEST_CACHE} without exploring the rest of it again.
      * @param start the state to start from.
+     * @param deadline the deadline in {@link System#nanoTime()} time or
+     *                 {@link #NO_DEADLINE}
      * @return a result dictating the furthest state and the maximum number of
      *         moves required to solve that state.
      */
-    private static FurthestStateResult calculateFurthestState(State start) {
-        HashMap<State, Integer> seen = new HashMap<>();
-        Queue<State> todo = new ArrayDeque<>();
-
-        seen.put(start, 0);
-        
-        {
-            Queue<State> todoStarting = new ArrayDeque<>();
-            todoStarting.add(start);
+    private static FurthestStateResult calculateFurthestState(State start, long deadline) {
+        try (StateArena arena = new StateArena(start, ARENA_CAPACITY)) {
+            arena.add(arena.encode(start), StateArena.NO_PARENT, 0);
+            // only moving the goal car can change whether a state has won, so
+            // other moves keep the won-ness (distance 0 or not) of their parent
+            int goalCarI = start.getNumCars()-1;
             
-            while (!todoStarting.isEmpty()) {
-                State curr = todoStarting.poll();
-                for (State next : curr.genMoveStates()) {
-                    if (!seen.containsKey(next)) {
-                        if (next.hasWon()) {
-                            seen.put(next, 0);
-                            todoStarting.add(next);
-                        } else {
-                            seen.put(next, 1);
-                            todo.add(next);
-                        }
-                    }
+            /* States are numbered in the order they are found, so going through
+            the finished ones (distance 0) in order is a breadth first search of them */
+            byte[] rec = new byte[start.getNumCars()];
+            for (int i = 0; i < arena.size(); i++) {
+                if (arena.getDist(i) != 0) continue;
+                arena.getRecord(i, rec);
+                int parent = i;
+                arena.forEachMove(rec, (carI, delta) -> {
+                    /* The arena copies the record, so one array does for every move */
+                    rec[carI] += delta;
+                    boolean won = carI != goalCarI || arena.isWon(rec);
+                    arena.add(rec, parent, won ? 0 : 1);
+                    rec[carI] -= delta;
+                    return true;
+                });
+            }
+            List<IntRect> key = layoutSignature(start);
+            for (int i = 1; i < arena.size(); i++) {
+                if (arena.getDist(i) != 0) continue;
+                List<IntRect> signature = layoutSignature(arena.getState(i));
+                if (compareSignatures(signature, key) < 0) key = signature;
+            }
+    
+            FurthestStateResult cached = FURTHEST_CACHE.get(key);
+            if (cached != null) return cached;
+    
+            /* Then the unfinished states next to them, followed by everything
+            found from those, in the order they were found */
+            int startingEnd = arena.size();
+            int furthest = 0;
+            int furthestI = 0;
+            int i = 0;
+            for (; i < arena.size() && !isPast(deadline); i++) {
+                if (i < startingEnd && arena.getDist(i) == 0) continue;
+                int dist = arena.getDist(i);
+    
+                if (furthest < dist) {
+                    furthest = dist;
+                    furthestI = i;
                 }
+    
+                arena.getRecord(i, rec);
+                int parent = i;
+                arena.forEachMove(rec, (carI, delta) -> {
+                    rec[carI] += delta;
+                    boolean won = (carI == goalCarI) ? arena.isWon(rec) : dist == 0;
+                    arena.add(rec, parent, won ? 0 : dist+1);
+                    rec[carI] -= delta;
+                    return true;
+                });
             }
+    
+            FurthestStateResult result = new FurthestStateResult((furthestI == 0) ? start : arena.getState(furthestI), furthest);
+            // a search cut short by the deadline may not have found the furthest
+            if (i == arena.size()) FURTHEST_CACHE.put(key, result);
+            return result;
         }
-
-        int furthest = 0;
-        State furthestState = start;
-
-        while (!todo.isEmpty()) {
-            State curr = todo.poll();
-            int dist = seen.get(curr);
-
-            if (furthest < dist) {
-                furthest = dist;
-                furthestState = curr;
+    }
+    
+    /**
+     * @param length the length of the car
+     * @param dir the direction of the car
+     * @return the size of a car of {@code length} facing {@code dir}
+     */
+    private static IntVec carSize(int length, IntVec dir) {
+        return dir.equals(Car.DOWN) ? (new IntVec(1, length)) : (new IntVec(length, 1));
+    }
+    /**
+     * @param cars the cars other than the goal car
+     * @param goalCar the goal car, which is placed last
+     * @return a finished state with the given cars
+     */
+    private static State withCars(ArrayList<Car> cars, Car goalCar) {
+        ArrayList<Car> all = new ArrayList<>(cars);
+        all.add(goalCar);
+        return new State(BOARD, goalCar.getRect().getPos(), all.toArray(new Car[0]));
+    }
+    /**
+     * Makes a random local change to a finished state: adds a car in a random
+     * free position (if there are less than {@code nCars}), moves a car to a
+     * random free position, removes a car or resizes a car between length 2
+     * and 3 in place.
+     * @param s the finished state to change
+     * @param nCars the max number of cars on the board
+     * @return the changed finished state or {@code null} if the chosen change
+     *         was not possible
+     */
+    private static State mutate(State s, int nCars) {
+        ArrayList<Car> cars = new ArrayList<>();
+        for (int i = 0; i < s.getNumCars()-1; i++) cars.add(s.getCar(i));
+        Car goalCar = s.getCar(s.getNumCars()-1);
+        Board board = Board.genFor(BOARD, cars.toArray(new Car[0])).withCar(goalCar, cars.size());
+        
+        double r = Math.random();
+        if (cars.isEmpty() || r < 0.3 || (r < 0.7 && cars.size() < nCars)) {
+            if (r < 0.3 && !cars.isEmpty()) {
+                // move a car somewhere else
+                Car c = cars.remove((int) (cars.size() * Math.random()));
+                board = board.withCar(c, Board.NONE);
+            } else if (nCars <= cars.size()) {
+                return null;
             }
-
-            for (State next : curr.genMoveStates()) {
-                if (!seen.containsKey(next)) {
-                    seen.put(next, next.hasWon() ? 0 : dist+1);
-                    todo.add(next);
-                }
+            IntVec dir = (Math.random() < 0.5) ? Car.RIGHT : Car.DOWN;
+            IntVec size = carSize((int) (2 + 2*Math.random()), dir);
+            ArrayList<IntVec> positions = findValidPositions(board, size);
+            if (positions.isEmpty()) return null;
+            cars.add(new Car(new IntRect(positions.get((int) (positions.size() * Math.random())), size), dir));
+        } else if (r < 0.85) {
+            cars.remove((int) (cars.size() * Math.random()));
+        } else {
+            int i = (int) (cars.size() * Math.random());
+            Car c = cars.get(i);
+            IntVec dir = c.getDirection();
+            int length = c.getRect().getSize().manDist() - 1;
+            IntRect rect;
+            if (length == 3) {
+                // shrink from either end
+                IntVec pos = (Math.random() < 0.5) ? c.getRect().getPos() : c.getRect().getPos().add(dir);
+                rect = new IntRect(pos, carSize(2, dir));
+            } else {
+                // grow towards either end
+                IntVec pos = (Math.random() < 0.5) ? c.getRect().getPos() : c.getRect().getPos().sub(dir);
+                rect = new IntRect(pos, carSize(3, dir));
+                IntRect added = pos.equals(c.getRect().getPos()) ? new IntRect(c.getRect().getEnd().sub(dir.swap()), new IntVec(1, 1)) : new IntRect(pos, new IntVec(1, 1));
+                if (!BOARD.contains(rect) || !board.allNone(added)) return null;
             }
+            cars.set(i, new Car(rect, dir));
         }
-
-        return new FurthestStateResult(furthestState, seen.get(furthestState));
+        return withCars(cars, goalCar);
     }
     
     /**
-     * Represents to keep trying for {@link #generateWithParams(int, int, int)}.
+     * Represents to keep trying for
+     * {@link #generateWithParams(int, int, int, long, GenerationListener)}.
      */
     private static final int INFINITE = -1;
+    /**
+     * The number of evaluations without improvement after which the local
+     * search in {@link #generateWithParams(int, int, int, long, GenerationListener)}
+     * starts again from a fresh layout.
+     */
+    private static final int RESTART_AFTER = 20;
+    /**
+     * Notified by the generator each time it finds a puzzle harder than any it
+     * has found before.
+     */
+    public interface GenerationListener {
+        /**
+         * @param state the new hardest puzzle
+         * @param moves the number of moves required to solve it
+         */
+        void improved(State state, int moves);
+    }
+    
     /**
      * Tries to generate a board with at most {@code nCars} taking at least
-     * {@code nMoves} to solve under {@code nTries} board generations (or with
-     * infinite tries of {@code nTries} is {@link #INFINITE}). If it cannot
-     * generate such a board within {@code nTries} it returns the current most
-     * difficult puzzle (in number of moves to solve).
+     * {@code nMoves} to solve under {@code nTries} evaluations (or with
+     * infinite tries of {@code nTries} is {@link #INFINITE}) before the
+     * deadline. If it cannot generate such a board in time it returns the
+     * current most difficult puzzle (in number of moves to solve), so at least
+     * one layout is always evaluated.
+     * <p>
+     * Rather than generating unrelated boards until one is hard enough, this
+     * grows a layout by local search: each try makes one change with
+     * {@link #mutate(State, int)}, measures the depth of the resulting
+     * component with {@link #calculateFurthestState(State, long)} and keeps the
+     * change if the depth did not decrease.
+     * <p>
+     * Each change is evaluated over its whole component again. Adding, moving
+     * or resizing a car changes which states exist, and removing one can make
+     * any of them closer to the goal, so no distance from the last evaluation
+     * is known to still hold. Stopping early once the last depth is reached
+     * would not help either: the change is only kept if the depth did not
+     * decrease, which needs the whole component, and the depth of a kept
+     * change is the new one to beat. A change that leads back into a
+     * component explored recently is answered by {@link #FURTHEST_CACHE}.
      * @param nCars the max number of cars on the board
      * @param nMoves the min number of moves
-     * @param nTries the number of boards, at most, to generate
+     * @param nTries the number of layouts, at most, to evaluate
+     * @param deadline the deadline in {@link System#nanoTime()} time or
+     *                 {@link #NO_DEADLINE}
+     * @param listener notified of each harder puzzle found, may be
+     *                 {@code null}
      * @return the generated state
      */
-    private static State generateWithParams(int nCars, int nMoves, int nTries) {
+    private static State generateWithParams(int nCars, int nMoves, int nTries, long deadline, GenerationListener listener) {
         int moves = -1;
         State best = null;
 
         // TODO: show loading screen and perhaps display these inspirational messages to the user
-        System.out.println("Hold on! I'm trying my best to generate a board with " + nCars + " cars, takes " + nMoves + " moves to solve, under " + nTries + " generations.");
+        System.out.println("Hold on! I'm trying my best to generate a board with " + nCars + " cars, takes " + nMoves + " moves to solve, under " + nTries + " evaluations.");
 
-        for (int tries = 0; ((tries < nTries) || nTries == INFINITE) && moves < nMoves; tries++) {
-            System.out.print("Attempt " + tries + ": ");
-            State start = generateInitialState(BOARD, nCars);
-            FurthestStateResult result = calculateFurthestState(start);
-//            if (moves < result.dist) {
-//                moves = result.dist;
-//                best = result.state;
-//            }
+        State current = null;
+        int currentDist = -1;
+        int stale = 0;
+        // layouts already evaluated, by their car rects (cars only compare
+        // positions, so a resized car would otherwise look unchanged)
+        HashSet<List<IntRect>> evaluated = new HashSet<>();
+        for (int tries = 0; ((tries < nTries) || nTries == INFINITE) && moves < nMoves && (best == null || !isPast(deadline)); ) {
+            State start;
+            if (current == null || RESTART_AFTER < stale) {
+                start = generateInitialState(BOARD, nCars);
+                currentDist = -1;
+                stale = 0;
+            } else {
+                start = mutate(current, nCars);
+                if (start == null) continue;
+            }
+            List<IntRect> layout = IntStream.range(0, start.getNumCars()).mapToObj(i -> start.getCar(i).getRect()).collect(Collectors.toList());
+            if (!evaluated.add(layout)) {
+                tries++;
+                stale++;
+                continue;
+            }
+            
+            System.out.print("Attempt " + tries++ + ": ");
+            FurthestStateResult result = calculateFurthestState(start, (best == null) ? NO_DEADLINE : deadline);
             System.out.print("distance of " + result.dist);
+            if (currentDist <= result.dist) {
+                stale = (currentDist < result.dist) ? 0 : stale + 1;
+                current = start;
+                currentDist = result.dist;
+            } else {
+                stale++;
+            }
             if (moves < result.dist) {
                 int currMoves = result.state.solve().length;
                 if (moves < currMoves) {
                     moves = currMoves;
                     best = result.state;
+                    if (listener != null) listener.improved(best, moves);
                 }
                 System.out.print(", " + currMoves + " moves to solve");
             }
@@ -252,12 +478,16 @@ public class StateGenerator {
     }
     
     /**
-     * Generates a state for the given difficulty.
+     * Generates a state for the given difficulty, returning the hardest state
+     * found so far once {@code budget} has elapsed.
      * @param difficulty the difficulty
+     * @param budget the time allowed or {@code null} for no limit
+     * @param listener notified of each harder state found, may be {@code null}
      * @return the generate state
      */
-    public State generate(double difficulty) {
+    public State generate(double difficulty, Duration budget, GenerationListener listener) {
         float d = (float)difficulty;
+        long deadline = (budget == null) ? NO_DEADLINE : System.nanoTime() + budget.toNanos();
         return generateWithParams(gradient(d, new GradientPoint[]{
             new GradientPoint(0, 1),
             new GradientPoint(1, 16),
@@ -270,7 +500,39 @@ public class StateGenerator {
         }), gradient(d, new GradientPoint[]{
             new GradientPoint(0, 100),
             new GradientPoint(1, 10000),
-        }));
+        }), deadline, listener);
+    }
+    
+    /**
+     * Generates a state for the given difficulty.
+     * @param difficulty the difficulty
+     * @return the generate state
+     */
+    public State generate(double difficulty) {
+        return generate(difficulty, null, null);
+    }
+    
+    /**
+     * Generates a state for the given level, returning the hardest state found
+     * so far once {@code budget} has elapsed.
+     * @param level the level to generate a state for
+     * @param budget the time allowed or {@code null} for no limit
+     * @param listener notified of each harder state found, may be {@code null}
+     * @return the generate state
+     */
+    public State generate(int level, Duration budget, GenerationListener listener) {
+        return generate(Math.atan(((double)level) / 20), budget, listener);
+    }
+    
+    /**
+     * Same as {@link #generate(int, Duration, GenerationListener)} with no
+     * listener.
+     * @param level the level to generate a state for
+     * @param budget the time allowed or {@code null} for no limit
+     * @return the generate state
+     */
+    public State generate(int level, Duration budget) {
+        return generate(level, budget, null);
     }
     
     /**
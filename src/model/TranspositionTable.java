@@ -0,0 +1,93 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process wide table of solved positions, mapping each one to its distance
+ * from the goal and the first move of an optimal solution from it. It holds
+ * at most a fixed number of positions, evicting with the clock algorithm: each
+ * entry has a bit set whenever it is read, and when room is needed a hand
+ * sweeps the slots clearing set bits and evicts the first entry whose bit was
+ * already clear. Reads never lock.
+ */
+final class TranspositionTable {
+    /**
+     * What is known about a solved position.
+     */
+    static final class Entry {
+        /**
+         * The number of moves to the goal.
+         */
+        final int dist;
+        /**
+         * The first move of an optimal solution, meaningless if {@link #dist}
+         * is 0.
+         */
+        final int carI, delta;
+        /**
+         * Set when the entry is read, cleared by the clock hand.
+         */
+        volatile boolean referenced;
+
+        Entry(int dist, int carI, int delta) {
+            this.dist = dist;
+            this.carI = carI;
+            this.delta = delta;
+        }
+    }
+
+    private final ConcurrentHashMap<PackedState, Entry> map;
+    /**
+     * The key held in each slot of the clock, {@code null} if the slot is free.
+     */
+    private final PackedState[] slots;
+    private int hand;
+
+    /**
+     * @param capacity the most positions to hold
+     */
+    TranspositionTable(int capacity) {
+        map = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        slots = new PackedState[capacity];
+    }
+
+    /**
+     * @param key the position
+     * @return what is known about it or {@code null} if it is not in the table
+     */
+    Entry get(PackedState key) {
+        Entry e = map.get(key);
+        if (e != null) e.referenced = true;
+        return e;
+    }
+
+    /**
+     * Adds a position to the table if it is not already there, evicting one if
+     * the table is full.
+     * @param key the position
+     * @param dist the number of moves to the goal
+     * @param carI the car of the first move of an optimal solution
+     * @param delta the delta of the first move of an optimal solution
+     */
+    synchronized void put(PackedState key, int dist, int carI, int delta) {
+        if (map.containsKey(key)) return;
+        while (slots[hand] != null) {
+            Entry e = map.get(slots[hand]);
+            if (e.referenced) {
+                e.referenced = false;
+                hand = (hand + 1) % slots.length;
+            } else {
+                map.remove(slots[hand]);
+                break;
+            }
+        }
+        slots[hand] = key;
+        map.put(key, new Entry(dist, carI, delta));
+        hand = (hand + 1) % slots.length;
+    }
+
+    /**
+     * @return the number of positions in the table
+     */
+    int size() { return map.size(); }
+}
@@ -0,0 +1,71 @@
+package model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Maps each key to one canonical value, so that equal immutable objects can
+ * share a single instance. Values are only weakly held: once nothing else
+ * refers to a canonical value it is collected, and its entry is dropped the
+ * next time the interner is used. Safe to use from any thread.
+ * @param <K> the type of the exact key of a value
+ * @param <V> the type of the values
+ */
+final class WeakInterner<K, V> {
+    /**
+     * A weak reference to a canonical value that remembers its key, so the
+     * entry can be removed once the value is collected.
+     */
+    private static final class Ref<K, V> extends WeakReference<V> {
+        final K key;
+
+        Ref(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Ref<K, V>> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+    /**
+     * @param key the exact key of the value
+     * @param make makes the value to become the canonical one, only called if
+     *             there is none for {@code key}
+     * @return the canonical value for {@code key}
+     */
+    V intern(K key, Supplier<? extends V> make) {
+        purge();
+        while (true) {
+            Ref<K, V> ref = map.get(key);
+            if (ref != null) {
+                V canonical = ref.get();
+                if (canonical != null) return canonical;
+                /* Collected but not yet purged */
+                map.remove(key, ref);
+            }
+            V value = make.get();
+            if (map.putIfAbsent(key, new Ref<>(key, value, queue)) == null) return value;
+        }
+    }
+
+    /**
+     * @return the number of entries, including any whose value was collected
+     *         since the interner was last used
+     */
+    int size() { return map.size(); }
+
+    /**
+     * Drops the entries of collected values.
+     */
+    @SuppressWarnings("unchecked")
+    private void purge() {
+        for (Reference<? extends V> r; (r = queue.poll()) != null; ) {
+            Ref<K, V> ref = (Ref<K, V>) r;
+            map.remove(ref.key, ref);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * The game engine: boards, cars, the solver, the level generator and their
+ * JSON serialisation, along with the immutable game and settings model the
+ * UI is built on.
+ * <p>
+ * Nothing in this package may depend on JavaFX (or on {@code view} or
+ * {@code controller}), only on the JDK and json-simple, so that it can be
+ * compiled and run on its own in a headless JVM, like the command-line tool in
+ * {@code cli} does. The UI packages depend on this one, never the other way
+ * round.
+ */
+package model;
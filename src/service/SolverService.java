@@ -0,0 +1,197 @@
+package service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.State;
+import model.StateGenerator;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small local HTTP service in front of the solver and generator, so that
+ * several front ends can share one warmed up JVM. Only listens on the loopback
+ * address.
+ * <pre>
+ * POST /solve      body: a state as in State.toJson()
+ *                  reply: {"moves": n, "solution": [moves as in Move.toJson()]}
+ * POST /generate   body: {"level": n}, n from 1 to 50
+ *                  reply: {"state": a state, "moves": n}
+ * </pre>
+ * Solve requests are only deduplicated: a request for exactly the same board
+ * as one already being solved waits on that search instead of starting
+ * another, but requests for different boards never share any search work.
+ * Solutions are remembered by the solver's own process wide table of solved
+ * positions, so later requests for any state along one are answered straight
+ * away. Each board generated gets at most {@link #GENERATE_BUDGET}.
+ */
+public class SolverService {
+    private static final int DEFAULT_PORT = 8080;
+    /**
+     * The highest level that can be generated. The generator's parameters
+     * stop growing at about level 32, so higher levels only cost more.
+     */
+    private static final int MAX_LEVEL = 50;
+    /**
+     * The time a generate request may take, after which the hardest board
+     * found so far is used.
+     */
+    private static final Duration GENERATE_BUDGET = Duration.ofSeconds(10);
+
+    /**
+     * Runs the searches, one per core since they are CPU bound.
+     */
+    private final ExecutorService solvers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * The searches in progress, keyed by the state's JSON so that two states
+     * are only shared if they are exactly the same board.
+     */
+    private final Map<String, CompletableFuture<State.Move[]>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Starts the service on the port given as the first argument, or
+     * {@value #DEFAULT_PORT}.
+     * @param args the command line arguments
+     * @throws IOException if the port could not be bound
+     */
+    public static void main(String[] args) throws IOException {
+        /* Keep the model's progress output out of anything reading stdout */
+        PrintStream out = System.out;
+        System.setOut(System.err);
+        int port = (args.length < 1) ? DEFAULT_PORT : Integer.parseInt(args[0]);
+        new SolverService().start(port);
+        out.println("Listening on port " + port);
+    }
+
+    /**
+     * @param port the port to listen on
+     * @throws IOException if the port could not be bound
+     */
+    public void start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/solve", e -> handle(e, this::solve));
+        server.createContext("/generate", e -> handle(e, this::generate));
+        server.setExecutor(newHandlerExecutor());
+        server.start();
+    }
+
+    /**
+     * Handlers mostly wait on searches, so they run on virtual threads when
+     * the JVM has them (Java 21 and later) and on a cached pool otherwise.
+     * @return the executor to run the handlers on
+     */
+    private static ExecutorService newHandlerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Used by {@link #handle(HttpExchange, Handler)}
+     */
+    private interface Handler {
+        JSONObject run(JSONObject request) throws ExecutionException, InterruptedException;
+    }
+
+    /**
+     * Reads the request's JSON body, runs {@code handler} on it and writes its
+     * reply, or an {@code {"error": ...}} reply if anything went wrong.
+     */
+    private static void handle(HttpExchange e, Handler handler) throws IOException {
+        int status = 200;
+        JSONObject reply;
+        try (InputStream in = e.getRequestBody()) {
+            if (!e.getRequestMethod().equals("POST")) {
+                status = 405;
+                reply = error("only POST is supported");
+            } else {
+                Object request = new JSONParser().parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                if (!(request instanceof JSONObject)) throw new IllegalArgumentException("expected a JSON object");
+                reply = handler.run((JSONObject) request);
+            }
+        } catch (ParseException | RuntimeException ex) {
+            status = 400;
+            reply = error("bad request: " + ex);
+        } catch (ExecutionException ex) {
+            status = 500;
+            reply = error(String.valueOf(ex.getCause()));
+        } catch (InterruptedException ex) {
+            /* Still answer, but let the executor see the thread was interrupted */
+            Thread.currentThread().interrupt();
+            status = 500;
+            reply = error("interrupted");
+        }
+        byte[] body = reply.toJSONString().getBytes(StandardCharsets.UTF_8);
+        e.getResponseHeaders().set("Content-Type", "application/json");
+        e.sendResponseHeaders(status, body.length);
+        try (OutputStream os = e.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static JSONObject error(String message) {
+        JSONObject o = new JSONObject();
+        o.put("error", message);
+        return o;
+    }
+
+    /**
+     * Solves the state in {@code request}, waiting on the search of any other
+     * request for exactly the same state rather than starting another.
+     */
+    private JSONObject solve(JSONObject request) throws ExecutionException, InterruptedException {
+        State state = State.fromJson(request);
+        String key = state.toJson().toJSONString();
+
+        CompletableFuture<State.Move[]> search = inFlight.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(state::solve, solvers));
+        search.whenComplete((s, ex) -> inFlight.remove(key, search));
+        State.Move[] solution = search.get();
+
+        JSONObject o = new JSONObject();
+        if (solution == null) {
+            o.put("moves", null);
+            o.put("solution", null);
+        } else {
+            JSONArray moves = new JSONArray();
+            for (State.Move m : solution) moves.add(m.toJson());
+            o.put("moves", solution.length);
+            o.put("solution", moves);
+        }
+        return o;
+    }
+
+    /**
+     * Generates a board for the level in {@code request} within
+     * {@link #GENERATE_BUDGET}.
+     */
+    private JSONObject generate(JSONObject request) throws ExecutionException, InterruptedException {
+        Object level = request.get("level");
+        if (!(level instanceof Long) || (Long) level < 1 || MAX_LEVEL < (Long) level) {
+            throw new IllegalArgumentException("level must be an integer from 1 to " + MAX_LEVEL);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            State state = new StateGenerator().generate(((Long) level).intValue(), GENERATE_BUDGET);
+            JSONObject o = new JSONObject();
+            o.put("state", state.toJson());
+            o.put("moves", state.solve().length);
+            return o;
+        }, solvers).get();
+    }
+}
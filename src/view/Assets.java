@@ -0,0 +1,87 @@
+package view;
+
+import javafx.scene.image.Image;
+import javafx.scene.media.AudioClip;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Shared registry of the game's sounds and images. Each asset is loaded once
+ * from the classpath (all of them in parallel by {@link #preload()}) and the
+ * same decoded instance is handed to every view that asks for it.
+ */
+public class Assets {
+    public static final String CLICK_SOUND = "/sounds/click.mp3";
+    public static final String WIN_SOUND = "/sounds/win.mp3";
+    public static final String[] TUTORIAL_IMAGES = new String[]{
+        "/images/tutorial1.png",
+        "/images/tutorial2.png",
+        "/images/tutorial3.png",
+        "/images/tutorial4.png",
+        "/images/tutorial5.png",
+    };
+    
+    private static final Map<String, CompletableFuture<AudioClip>> sounds = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<Image>> images = new ConcurrentHashMap<>();
+    
+    /**
+     * Loads assets off the FX thread, daemon threads so they never keep the
+     * application alive.
+     */
+    private static final ExecutorService loader = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()),
+        r -> {
+            Thread t = new Thread(r, "asset-loader");
+            t.setDaemon(true);
+            return t;
+        }
+    );
+    
+    /**
+     * @param path the classpath path of the asset
+     * @return the URL of the asset for JavaFX
+     */
+    private static String toUrl(String path) {
+        return Assets.class.getResource(path).toExternalForm();
+    }
+    
+    /**
+     * Starts loading the asset at {@code path} unless it already is.
+     */
+    private static <T> CompletableFuture<T> load(Map<String, CompletableFuture<T>> cache, String path, Function<String, T> make) {
+        return cache.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(() -> make.apply(toUrl(p)), loader));
+    }
+    
+    /**
+     * Starts loading every sound and image in parallel.
+     * @return a future completing once all of them are loaded
+     */
+    public static CompletableFuture<Void> preload() {
+        return CompletableFuture.allOf(Stream.concat(
+            Stream.of(CLICK_SOUND, WIN_SOUND).map(path -> load(sounds, path, AudioClip::new)),
+            Stream.of(TUTORIAL_IMAGES).map(path -> load(images, path, url -> new Image(url)))
+        ).toArray(CompletableFuture[]::new));
+    }
+    
+    /**
+     * @param path the classpath path of the sound
+     * @return the shared clip, waiting for it to load if need be
+     */
+    public static AudioClip getSound(String path) {
+        return load(sounds, path, AudioClip::new).join();
+    }
+    
+    /**
+     * @param path the classpath path of the image
+     * @return the shared image, waiting for it to load if need be
+     */
+    public static Image getImage(String path) {
+        return load(images, path, url -> new Image(url)).join();
+    }
+}
@@ -4,9 +4,11 @@ import controller.GameController;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import model.State;
 import view.theme.*;
 
 import java.io.IOException;
+import java.util.Set;
 
 public class Game extends Viewable {
     private GlobalController g;
@@ -14,6 +16,7 @@ public class Game extends Viewable {
     
     private model.Settings.Theme themeType;
     private view.theme.Theme theme;
+    private State startingState;
     
     /**
      * This generates the view for the Game, sets the GlobalController and
@@ -22,6 +25,7 @@ public class Game extends Viewable {
      */
     public Game(GlobalController g) {
         this.g = g;
+        this.startingState = g.getModel().getGameState().getStartingState();
         
         System.out.println("Generating Model Screen \n------------------------------");
     
@@ -39,31 +43,44 @@ public class Game extends Viewable {
     }
 
     /**
-     * Passes in a theme type, and draws the game board depending on which
-     * themeType is stored in settings.
+     * Passes in a theme type, and returns the colours to draw the cars with
+     * for that themeType.
      * @param themeType
      * @return
      */
-    private static Theme makeTheme(model.Settings.Theme themeType) {
+    private static ColorGenerator makeColorGenerator(model.Settings.Theme themeType) {
         switch (themeType) {
             case DEFAULT:
-                return new DefaultTheme(new RandomColorGenerator());
+                return new RandomColorGenerator();
             case DEUTERANOPE:
-                return new DefaultTheme(new DeuteranopeColorGenerator());
+                return new DeuteranopeColorGenerator();
             case TRITANOPE:
-                return new DefaultTheme(new TritanopeColorGenerator());
+                return new TritanopeColorGenerator();
+            case CANVAS:
+                return new RandomColorGenerator();
         }
         return null;
     }
 
+    /**
+     * Passes in a theme type, and draws the game board depending on which
+     * themeType is stored in settings.
+     * @param themeType
+     * @return
+     */
+    private static Theme makeTheme(model.Settings.Theme themeType) {
+        if (themeType == model.Settings.Theme.CANVAS) return new CanvasTheme(makeColorGenerator(themeType));
+        return new DefaultTheme(makeColorGenerator(themeType));
+    }
+
     /**
      * This generates the view for the GameBoard and the sidePanel by using an FXML
      * loader and initialises the controller.
      */
     private void rebuildSceneWithTheme() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(theme.getFxmlPath()));
-            setScene(new Scene(loader.load(), theme.getDimensions().getX(), theme.getDimensions().getY()));
+            FXMLLoader loader = loadFxml(theme.getFxmlPath());
+            setScene(new Scene(loader.getRoot(), theme.getDimensions().getX(), theme.getDimensions().getY()));
             getScene().getStylesheets().add(theme.getCssPath());
         
             theme.init(getScene(), g);
@@ -76,12 +93,19 @@ public class Game extends Viewable {
     }
 
     /**
-     * Rebuilds the scene with the new theme if the theme if the themeType in settings
-     * is different to the one set in this class. Otherwise just redraw the board.
+     * Builds the scene with the theme the first time or when the themeType in
+     * settings needs a different kind of theme, otherwise a different
+     * themeType only swaps the colours in place. Then redraws the board.
      */
     private void themeUpdate() {
-        // if the theme is different from the one in settings, update it
-        if (themeType != g.getModel().getSettings().getTheme()) {
+        // if the theme is different from the one in settings but drawn the same way, recolour it
+        if (theme != null && themeType != g.getModel().getSettings().getTheme()
+                && (themeType == model.Settings.Theme.CANVAS) == (g.getModel().getSettings().getTheme() == model.Settings.Theme.CANVAS)) {
+            System.out.println("Recolouring theme");
+            themeType = g.getModel().getSettings().getTheme();
+            theme.setColorGenerator(makeColorGenerator(themeType));
+            theme.update();
+        } else if (themeType != g.getModel().getSettings().getTheme()) {
             System.out.println("Updating theme");
             themeType = g.getModel().getSettings().getTheme();
             theme = makeTheme(themeType);
@@ -99,5 +123,26 @@ public class Game extends Viewable {
         themeUpdate();
         controller.update();
     }
+
+    /**
+     * Only updates the controller when the game changed, a settings change
+     * just redraws the board.
+     * @param changed the fields of the model that changed
+     */
+    @Override
+    void update(Set<model.Model.Field> changed) {
+        themeUpdate();
+        if (changed.contains(model.Model.Field.GAME_STATE) || changed.contains(model.Model.Field.LEVEL)) controller.update();
+    }
+
+    /**
+     * The board is drawn for the cars of one game, so the view can only be
+     * reused for that same game.
+     * @return whether the model's game is the one this view was built for
+     */
+    @Override
+    boolean isReusable() {
+        return g.getModel().getGameState() != null && g.getModel().getGameState().getStartingState() == startingState;
+    }
     
 }
@@ -3,6 +3,8 @@ package view;
 import javafx.stage.Stage;
 import model.Model;
 
+import java.util.function.Function;
+
 /**
  * Interface for managing views and models for the game
  */
@@ -15,4 +17,5 @@ public interface GlobalController {
     void setModel(Model model, boolean update);
     Model getModel();
     Stage getStage();
+    <T extends Viewable> T getView(Class<T> type, Function<GlobalController, T> make);
 }
@@ -2,22 +2,38 @@ package view;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import model.Model;
+import model.State;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.EnumSet;
 import java.util.Scanner;
 import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class Gridlock extends Application {
     
     private Stack<Viewable> views = new Stack<>();
+    private ViewCache viewCache = new ViewCache();
     private static Stage primaryStage;
     private Model model;
+    /**
+     * The fields changed by {@link #setModel(Model, boolean)} calls that the
+     * top view has not been told about yet.
+     */
+    private EnumSet<Model.Field> pendingChanges = EnumSet.noneOf(Model.Field.class);
 
     /**
      * This interface is used throughout the program to manage the views that the stage
@@ -34,6 +50,7 @@ public class Gridlock extends Application {
         public void setModel(Model model, boolean update) { self.setModel(model, update); }
         public Model getModel() { return self.getModel(); }
 		public Stage getStage() {return primaryStage;}
+        public <T extends Viewable> T getView(Class<T> type, Function<view.GlobalController, T> make) { return self.viewCache.get(type, make, this); }
 
     }
 
@@ -70,9 +87,24 @@ public class Gridlock extends Application {
         displayTop();
     }
 
+    /**
+     * Fully updates the top view, which covers any changes still pending.
+     */
     private void updateTop() {
+        pendingChanges.clear();
         views.get(views.size() - 1).update();
     }
+    
+    /**
+     * Tells the top view about all the changes made since the last time it
+     * was updated, at most once per batch of input events.
+     */
+    private void flushChanges() {
+        if (pendingChanges.isEmpty() || views.empty()) return;
+        EnumSet<Model.Field> changed = pendingChanges;
+        pendingChanges = EnumSet.noneOf(Model.Field.class);
+        views.peek().update(changed);
+    }
 
     /**
      * Updates the stage view the top view on the stack.
@@ -83,14 +115,22 @@ public class Gridlock extends Application {
     }
 
     /**
-     * Sets the model and updates the top view on the stack if the inputted
-     * boolean is true.
+     * Sets the model and, if the inputted boolean is true, schedules an
+     * update of the top view on the stack. The model is replaced straight
+     * away but the view is only updated once all the events already queued
+     * have been handled, so a burst of changes (like dragging the volume
+     * slider) redraws once with every field that changed.
      * @param model
      * @param update
      */
     public void setModel(Model model, boolean update) {
+        Model old = this.model;
         this.model = model;
-        if (update) views.peek().update();
+        if (!update) return;
+        boolean scheduled = !pendingChanges.isEmpty();
+        pendingChanges.addAll(model.changedFrom(old));
+        /* Not on an animation pulse, views may show dialogs when updated and that is not allowed during one */
+        if (!scheduled && !pendingChanges.isEmpty()) Platform.runLater(this::flushChanges);
     }
 
     /**
@@ -108,26 +148,68 @@ public class Gridlock extends Application {
     public Model getModel() { return model; }
 
     /**
-     * Initialisation of the Game, starts by creating the save file or loadig the file if it already exists.
-     * Ends by pushing the Main Menu view to the stack.
-     * @param primaryStage
+     * Loads the saved model if a save file exists.
+     * @return the saved model, a new model if the save could not be read or
+     *         {@code null} if there is no save
      */
-    @Override
-    public void start(Stage primaryStage) {
-        Gridlock.primaryStage = primaryStage;
-        primaryStage.setTitle("Gridlock");
+    private static Model loadSave() {
         File savedFile = new File("save.json");
         if(savedFile.exists() && !savedFile.isDirectory()) {
             try {
                 @SuppressWarnings("resource")
                 String save = new Scanner(new File("save.json")).useDelimiter("\\Z").next();
-                model = Model.fromJson((JSONObject) new JSONParser().parse(save));
+                return Model.fromJson((JSONObject) new JSONParser().parse(save));
             } catch (FileNotFoundException | ParseException e) {
                 e.printStackTrace();
-                model = new Model();
+                return new Model();
             }
         }
-        push(new MainMenu(new GlobalController(this)));
+        return null;
+    }
+
+    /**
+     * Shows a lightweight splash screen, the size of the main menu, while the
+     * game is starting up.
+     */
+    private void showSplash() {
+        ImageView logo = new ImageView(new Image(getClass().getResource("/images/gridlock-logo.jpg").toExternalForm(), 200, 150, true, true));
+        VBox layout = new VBox(15, logo, new Label("Loading..."));
+        layout.setAlignment(Pos.CENTER);
+        primaryStage.setScene(new Scene(layout, 300, 600));
+        primaryStage.show();
+    }
+
+    /**
+     * Initialisation of the Game. Shows a splash screen straight away, then
+     * reads the save file and the FXML of the views, loads the sounds and
+     * images and warms up the solver all at once in the background. The Main
+     * Menu is built on the FX thread, behind the splash, as soon as the save
+     * and its FXML are ready.
+     * @param primaryStage
+     */
+    @Override
+    public void start(Stage primaryStage) {
+        Gridlock.primaryStage = primaryStage;
+        primaryStage.setTitle("Gridlock");
+        showSplash();
+
+        Assets.preload();
+        for (String fxmlPath : new String[]{"/fxml/settings.fxml", "/fxml/tutorial.fxml", "/fxml/game.fxml"}) {
+            Viewable.preloadFxml(fxmlPath);
+        }
+        /* Gets the JIT compiling the search before the first hint or level */
+        CompletableFuture.runAsync(() -> State.makeDefault().solve());
+
+        CompletableFuture<Model> save = CompletableFuture.supplyAsync(Gridlock::loadSave);
+        CompletableFuture<byte[]> mainMenu = Viewable.preloadFxml("/fxml/mainMenu.fxml");
+        CompletableFuture.allOf(save, mainMenu).whenComplete((ignored, e) -> Platform.runLater(() -> {
+            model = save.exceptionally(saveError -> {
+                saveError.printStackTrace();
+                return new Model();
+            }).join();
+            GlobalController g = new GlobalController(this);
+            push(g.getView(MainMenu.class, MainMenu::new));
+        }));
     }
     
     public static void main(String[] args) {
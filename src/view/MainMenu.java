@@ -8,6 +8,7 @@ import javafx.scene.Scene;
 import java.io.IOException;
 
 public class MainMenu extends Viewable {
+    private MainMenuController controller;
 
     /**
      * Loads the main menu view using an FXML Loader and sets the scene.
@@ -27,16 +28,24 @@ public class MainMenu extends Viewable {
             the controller
          */
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent root = loader.load();
+            FXMLLoader loader = loadFxml(fxmlPath);
+            Parent root = loader.getRoot();
             setScene(new Scene(root, sceneWidth, sceneHeight));
             getScene().getStylesheets().add(cssPath);
 
-            MainMenuController controller = loader.getController();
+            controller = loader.getController();
             controller.init(g);
             controller.update();
         } catch (IOException e) {
             System.out.println("Could not load view, check FXML Loader");
         }
     }
+
+    /**
+     * Refreshes the menu when it is shown again.
+     */
+    @Override
+    void update() {
+        controller.update();
+    }
 }
@@ -34,8 +34,8 @@ public class Settings extends Viewable {
             to manage.
          */
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/settings.fxml"));
-            setScene(new Scene(loader.load()));
+            FXMLLoader loader = loadFxml("/fxml/settings.fxml");
+            setScene(new Scene(loader.getRoot()));
             getScene().getStylesheets().add("/css/settingsMenu.css");
     
             soundSlider = (Slider) getScene().lookup("#soundSlider");
@@ -16,8 +16,8 @@ public class Tutorial extends Viewable {
             the controller
          */
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/tutorial.fxml"));
-            setScene(new Scene(loader.load()));
+            FXMLLoader loader = loadFxml("/fxml/tutorial.fxml");
+            setScene(new Scene(loader.getRoot()));
             getScene().getStylesheets().add("/css/tutorial.css");
     
             controller = loader.getController();
@@ -26,4 +26,12 @@ public class Tutorial extends Viewable {
             System.out.println("Could not load view, check FXML Loader");
         }
     }
+
+    /**
+     * Starts the tutorial from the first slide when it is shown again.
+     */
+    @Override
+    void update() {
+        controller.showFirstSlide();
+    }
 }
@@ -0,0 +1,44 @@
+package view;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps the most recently used view of each type (its loaded scene graph and
+ * controller) so that navigating back to it does not reparse its FXML. Views
+ * are rebound to the current model by {@link Viewable#update()} when they are
+ * shown again.
+ */
+class ViewCache {
+    /**
+     * The number of views kept, the least recently used is evicted past this.
+     */
+    private static final int CAPACITY = 3;
+    
+    /**
+     * The cached views by their type, least recently used first.
+     */
+    private final LinkedHashMap<Class<? extends Viewable>, Viewable> views = new LinkedHashMap<Class<? extends Viewable>, Viewable>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Class<? extends Viewable>, Viewable> eldest) {
+            return CAPACITY < size();
+        }
+    };
+    
+    /**
+     * @param type the type of view to get
+     * @param make constructs a new view of that type
+     * @param g the global controller to construct it with
+     * @return the cached view of type {@code type} if it can be reused,
+     *         otherwise a newly constructed (and now cached) one
+     */
+    <T extends Viewable> T get(Class<T> type, Function<GlobalController, T> make, GlobalController g) {
+        Viewable view = views.get(type);
+        if (view == null || !view.isReusable()) {
+            view = make.apply(g);
+            views.put(type, view);
+        }
+        return type.cast(view);
+    }
+}
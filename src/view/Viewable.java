@@ -1,13 +1,85 @@
 package view;
 
+import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import model.Model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract class for dealing with Views. Contains basic functionality to get and set scenes.
  */
 public abstract class Viewable {
+    /**
+     * The contents of FXML files read in the background by
+     * {@link #preloadFxml(String)}, each is used once by
+     * {@link #loadFxml(String)}.
+     */
+    private static final Map<String, CompletableFuture<byte[]>> preloaded = new ConcurrentHashMap<>();
+    
     private Scene scene;
     void setScene(Scene scene) { this.scene = scene; }
     Scene getScene() { return scene; }
     void update() {}
+    /**
+     * Updates the view after the model changed, views that can skip work for
+     * some fields override this.
+     * @param changed the fields of the model that changed
+     */
+    void update(Set<Model.Field> changed) { update(); }
+    /**
+     * @return whether the view can be shown again for the current model, used
+     *         by {@link ViewCache}
+     */
+    boolean isReusable() { return true; }
+    
+    /**
+     * Reads the FXML file at {@code path} off the FX thread so that the next
+     * {@link #loadFxml(String)} of it does not have to. Only the bytes are
+     * read here: building the nodes creates controls (and runs the
+     * controller's {@code initialize()}), which is left to the FX thread.
+     * @param path the classpath path of the FXML file
+     * @return a future completing once the file has been read
+     */
+    static CompletableFuture<byte[]> preloadFxml(String path) {
+        return preloaded.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = Viewable.class.getResourceAsStream(p)) {
+                if (in == null) throw new IOException("No such FXML file: " + p);
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    /**
+     * Loads the FXML file at {@code path}, from the bytes read by
+     * {@link #preloadFxml(String)} if there are any. Must be called on the FX
+     * thread.
+     * @param path the classpath path of the FXML file
+     * @return the loader, with its root and controller loaded
+     * @throws IOException if the file could not be loaded
+     */
+    static FXMLLoader loadFxml(String path) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Viewable.class.getResource(path));
+        CompletableFuture<byte[]> future = preloaded.remove(path);
+        if (future != null) {
+            try {
+                /* The location stays set, so relative paths in the file still resolve */
+                loader.load(new ByteArrayInputStream(future.join()));
+                return loader;
+            } catch (CompletionException e) {
+                e.printStackTrace();
+            }
+        }
+        loader.load();
+        return loader;
+    }
 }
@@ -0,0 +1,298 @@
+package view.theme;
+
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.media.AudioClip;
+import javafx.scene.paint.Color;
+import model.Car;
+import model.GameState;
+import model.IntRect;
+import model.IntVec;
+import model.State;
+import view.Assets;
+import view.GlobalController;
+
+import java.util.ArrayList;
+
+/**
+ * Draws the whole board onto a single {@link Canvas} instead of using a node
+ * per car, so the scene graph stays the same size however many cars there
+ * are. The board is scaled to fit the canvas so boards bigger than 6x6 work
+ * too. Only the regions that changed since the last draw are redrawn.
+ */
+public class CanvasTheme implements Theme {
+
+    private ColorGenerator colorGenerator;
+    private Color[] colors;
+    private GlobalController g;
+    private Canvas canvas;
+    private AudioClip clickSound;
+    /**
+     * The size of a cell in pixels.
+     */
+    private double cell;
+
+    private State drawnState;
+    private State.Move drawnHint;
+    /**
+     * The regions, in pixels, that need redrawing. Each is {x, y, w, h}.
+     */
+    private ArrayList<double[]> dirty = new ArrayList<>();
+
+    /**
+     * The car being dragged and where it is being drawn, or -1 if none.
+     */
+    private int dragCarI = -1;
+    private double dragX, dragY;
+    private double pressX, pressY;
+
+    /**
+     * @param colorGenerator the colours to draw the cars with
+     */
+    public CanvasTheme(ColorGenerator colorGenerator) {
+        this.colorGenerator = colorGenerator;
+        clickSound = Assets.getSound(Assets.CLICK_SOUND);
+    }
+
+    @Override
+    public String getFxmlPath() { return "/fxml/game.fxml"; }
+
+    @Override
+    public String getCssPath() { return "/css/game.css"; }
+
+    @Override
+    public IntVec getDimensions() { return new IntVec(940, 600); }
+
+    /**
+     * Puts a canvas filling the game grid and sets up dragging the cars on it.
+     * @param scene
+     * @param g
+     */
+    @Override
+    public void init(Scene scene, GlobalController g) {
+        this.g = g;
+        Pane gameGrid = (Pane) scene.lookup("#gameGrid");
+        State state = g.getModel().getGameState().getCurrentState();
+
+        colors = colorGenerator.generateFor(state.getNumCars());
+
+        canvas = new Canvas(gameGrid.getPrefWidth(), gameGrid.getPrefHeight());
+        gameGrid.getChildren().add(canvas);
+        IntRect board = state.getBoardRect();
+        cell = Math.min(canvas.getWidth() / board.getW(), canvas.getHeight() / board.getH());
+
+        canvas.addEventFilter(MouseEvent.MOUSE_PRESSED, e -> {
+            State s = g.getModel().getGameState().getCurrentState();
+            int carI = s.getCarIndexAt(cellAt(e.getX(), e.getY()));
+            if (carI < 0) return;
+            IntRect r = s.getCar(carI).getRect();
+            dragCarI = carI;
+            pressX = e.getX();
+            pressY = e.getY();
+            dragX = cell * r.getX();
+            dragY = cell * r.getY();
+            markCarDirty(r);
+            redraw();
+        });
+        canvas.addEventFilter(MouseEvent.MOUSE_DRAGGED, e -> {
+            if (dragCarI < 0) return;
+            State s = g.getModel().getGameState().getCurrentState();
+            Car car = s.getCar(dragCarI);
+            IntRect r = car.getRect();
+            IntRect b = s.getBoardRect();
+            markDirty(dragX, dragY, cell * r.getW(), cell * r.getH());
+            /* Only along the direction the car can move, and never off the board */
+            dragX = clamp(cell * r.getX() + (e.getX() - pressX) * car.getDirection().getX(), cell * b.getX(), cell * (b.getEnd().getX() - r.getW()));
+            dragY = clamp(cell * r.getY() + (e.getY() - pressY) * car.getDirection().getY(), cell * b.getY(), cell * (b.getEnd().getY() - r.getH()));
+            markDirty(dragX, dragY, cell * r.getW(), cell * r.getH());
+            redraw();
+        });
+        canvas.addEventFilter(MouseEvent.MOUSE_RELEASED, e -> {
+            if (dragCarI < 0) return;
+            IntRect r = g.getModel().getGameState().getCurrentState().getCar(dragCarI).getRect();
+            markDirty(dragX, dragY, cell * r.getW(), cell * r.getH());
+            markCarDirty(r);
+            dragCarI = -1;
+            redraw();
+
+            double volume = g.getModel().getSettings().getVolume();
+            if (0 < volume) {
+                clickSound.setVolume(volume);
+                clickSound.play();
+            }
+        });
+
+        update();
+    }
+
+    /**
+     * @return the cell of the board under the pixel ({@code x}, {@code y})
+     */
+    private IntVec cellAt(double x, double y) {
+        IntRect b = g.getModel().getGameState().getCurrentState().getBoardRect();
+        return new IntVec((int) (x / cell), (int) (y / cell)).clamp(b.getPos(), b.getEnd().sub(1));
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private void markDirty(double x, double y, double w, double h) {
+        dirty.add(new double[]{x, y, w, h});
+    }
+
+    private void markCarDirty(IntRect r) {
+        markDirty(cell * r.getX(), cell * r.getY(), cell * r.getW(), cell * r.getH());
+    }
+
+    /**
+     * Marks the region covered by the hint for {@code hint} in {@code state},
+     * the arrow never leaves the lane between the car and where it is told to
+     * go.
+     */
+    private void markHintDirty(State state, State.Move hint) {
+        if (hint == null) return;
+        Car c = state.getCar(hint.getCarI());
+        IntRect from = c.getRect();
+        IntRect to = c.withMove(hint.getDelta()).getRect();
+        IntVec min = IntVec.min(from.getPos(), to.getPos());
+        IntVec max = from.getEnd().max(to.getEnd());
+        markDirty(cell * min.getX(), cell * min.getY(), cell * (max.getX() - min.getX()), cell * (max.getY() - min.getY()));
+    }
+
+    /**
+     * Swaps the car colours and redraws the whole board.
+     * @param colorGenerator the new colour generator
+     */
+    @Override
+    public void setColorGenerator(ColorGenerator colorGenerator) {
+        this.colorGenerator = colorGenerator;
+        colors = colorGenerator.generateFor(colors.length);
+        drawnState = null;
+    }
+
+    /**
+     * Works out which regions changed since the last update and redraws them.
+     */
+    @Override
+    public void update() {
+        GameState gs = g.getModel().getGameState();
+        State state = gs.getCurrentState();
+
+        if (drawnState == null) {
+            markDirty(0, 0, canvas.getWidth(), canvas.getHeight());
+        } else if (state != drawnState) {
+            for (int i = 0; i < state.getNumCars(); i++) {
+                if (state.getCar(i).equals(drawnState.getCar(i))) continue;
+                markCarDirty(drawnState.getCar(i).getRect());
+                markCarDirty(state.getCar(i).getRect());
+            }
+        }
+        if (drawnState != null && (gs.getHint() != drawnHint || state != drawnState)) {
+            markHintDirty(drawnState, drawnHint);
+            markHintDirty(state, gs.getHint());
+        }
+        drawnState = state;
+        drawnHint = gs.getHint();
+        redraw();
+    }
+
+    /**
+     * Redraws every dirty region, clipped to it so the rest of the canvas is
+     * left alone.
+     */
+    private void redraw() {
+        if (dirty.isEmpty()) return;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        State state = drawnState;
+        for (double[] d : dirty) {
+            gc.save();
+            gc.beginPath();
+            gc.rect(d[0], d[1], d[2], d[3]);
+            gc.clip();
+            gc.clearRect(d[0], d[1], d[2], d[3]);
+            drawHint(gc, state, drawnHint);
+            for (int i = 0; i < state.getNumCars(); i++) {
+                if (i == dragCarI) continue;
+                IntRect r = state.getCar(i).getRect();
+                if (intersects(d, cell * r.getX(), cell * r.getY(), cell * r.getW(), cell * r.getH())) {
+                    drawCar(gc, i, cell * r.getX(), cell * r.getY(), r);
+                }
+            }
+            drawGoal(gc, state);
+            if (dragCarI >= 0) {
+                IntRect r = state.getCar(dragCarI).getRect();
+                drawCar(gc, dragCarI, dragX, dragY, r);
+                /* Overlay to show which car is being pressed */
+                gc.setFill(new Color(1, 1, 1, 0.2));
+                gc.fillRoundRect(dragX, dragY, cell * r.getW(), cell * r.getH(), cell / 5, cell / 5);
+            }
+            gc.restore();
+        }
+        dirty.clear();
+    }
+
+    private static boolean intersects(double[] d, double x, double y, double w, double h) {
+        return x < d[0] + d[2] && d[0] < x + w && y < d[1] + d[3] && d[1] < y + h;
+    }
+
+    private void drawCar(GraphicsContext gc, int i, double x, double y, IntRect r) {
+        gc.setFill(colors[i]);
+        gc.fillRoundRect(x, y, cell * r.getW(), cell * r.getH(), cell / 5, cell / 5);
+    }
+
+    /**
+     * Draws the marker telling the user where the goal car has to reach.
+     */
+    private void drawGoal(GraphicsContext gc, State state) {
+        IntRect goal = state.getGoalRect();
+        gc.setFill(new Color(0, 0, 0, 0.7));
+        gc.fillRect(cell * goal.getEnd().getX() - cell / 10, cell * goal.getY(), cell / 10, cell * goal.getH());
+    }
+
+    /**
+     * Draws the ghost of the hinted car and an arrow to it, the same shapes
+     * as {@link DefaultTheme} scaled to the cell size.
+     */
+    private void drawHint(GraphicsContext gc, State state, State.Move hint) {
+        if (hint == null) return;
+        Car c = state.getCar(hint.getCarI());
+        IntVec dir = c.getDirection().mul(hint.getDelta()).signum();
+        IntVec odir = dir.swap().abs();
+        IntVec hintEndPos = c.withMove(hint.getDelta()).getRect().getPos();
+        double s = cell / 100;
+
+        Color col = colors[hint.getCarI()];
+        gc.setFill(Color.color(col.getRed(), col.getGreen(), col.getBlue(), 0.5));
+        gc.fillRoundRect(cell * hintEndPos.getX(), cell * hintEndPos.getY(), cell * c.getRect().getW(), cell * c.getRect().getH(), cell / 5, cell / 5);
+
+        IntVec hintStart = c.getRect().getPos().mul(100).add(odir.mul(50));
+        IntVec hintEnd = hintEndPos.mul(100).add(odir.mul(50)).add((dir.manDist() < 0) ? odir.mul(0) : c.getRect().getSize().mul(100).mul(dir));
+        gc.setFill(Color.grayRgb(0));
+        IntVec a = hintStart.add(odir.mul(-5)), b = hintEnd.add(odir.mul(5));
+        fillQuad(gc, s, a, new IntVec(a.getX(), b.getY()), b, new IntVec(b.getX(), a.getY()));
+        fillQuad(gc, s,
+            hintEnd.add(odir.mul(-10)),
+            hintEnd.add(odir.mul(-10)).add(dir.mul(-20)),
+            hintEnd.add(odir.mul(-50)).add(dir.mul(-100)),
+            hintEnd.add(odir.mul(-50)).add(dir.mul(-80))
+        );
+        fillQuad(gc, s,
+            hintEnd.add(odir.mul(10)),
+            hintEnd.add(odir.mul(10)).add(dir.mul(-20)),
+            hintEnd.add(odir.mul(50)).add(dir.mul(-100)),
+            hintEnd.add(odir.mul(50)).add(dir.mul(-80))
+        );
+    }
+
+    private static void fillQuad(GraphicsContext gc, double s, IntVec a, IntVec b, IntVec c, IntVec d) {
+        gc.fillPolygon(
+            new double[]{s * a.getX(), s * b.getX(), s * c.getX(), s * d.getX()},
+            new double[]{s * a.getY(), s * b.getY(), s * c.getY(), s * d.getY()},
+            4
+        );
+    }
+}
@@ -0,0 +1,107 @@
+package view.theme;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Slides car rectangles to their new positions, driven by a single
+ * {@link AnimationTimer} for all of them so every moving car is updated in the
+ * same frame. Moving a car that is still sliding retargets it from where it is
+ * now, so rapid successive moves (like spamming undo/redo) coalesce into one
+ * smooth slide. All state is kept in arrays allocated up front, nothing is
+ * allocated per frame.
+ */
+public class CarAnimator {
+    /**
+     * How long a slide takes in nanoseconds.
+     */
+    private static final long DURATION = 150_000_000;
+    
+    private final Rectangle[] rects;
+    private final double[] fromX, fromY, toX, toY;
+    private final long[] startTime;
+    private final boolean[] moving;
+    private int nMoving;
+    
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            step(now);
+        }
+    };
+    
+    /**
+     * @param rects the rectangles to animate, indexed by car
+     */
+    public CarAnimator(Rectangle[] rects) {
+        this.rects = rects;
+        fromX = new double[rects.length];
+        fromY = new double[rects.length];
+        toX = new double[rects.length];
+        toY = new double[rects.length];
+        startTime = new long[rects.length];
+        moving = new boolean[rects.length];
+    }
+    
+    /**
+     * Starts sliding the {@code i}th rectangle from where it currently is to
+     * ({@code x}, {@code y}).
+     * @param i the index of the car
+     * @param x the destination x
+     * @param y the destination y
+     */
+    public void moveTo(int i, double x, double y) {
+        fromX[i] = rects[i].getX();
+        fromY[i] = rects[i].getY();
+        toX[i] = x;
+        toY[i] = y;
+        startTime[i] = System.nanoTime();
+        if (!moving[i]) {
+            moving[i] = true;
+            nMoving++;
+        }
+        timer.start();
+    }
+    
+    /**
+     * Stops any slide of the {@code i}th rectangle and puts it straight at
+     * ({@code x}, {@code y}).
+     * @param i the index of the car
+     * @param x the x to put it at
+     * @param y the y to put it at
+     */
+    public void jumpTo(int i, double x, double y) {
+        stop(i);
+        rects[i].setX(x);
+        rects[i].setY(y);
+    }
+    
+    /**
+     * Stops any slide of the {@code i}th rectangle where it currently is, so
+     * that it can be dragged.
+     * @param i the index of the car
+     */
+    public void stop(int i) {
+        if (moving[i]) {
+            moving[i] = false;
+            nMoving--;
+        }
+    }
+    
+    /**
+     * Moves every sliding rectangle to where it should be at time {@code now}.
+     * @param now the time of the current frame in nanoseconds
+     */
+    private void step(long now) {
+        for (int i = 0; i < rects.length; i++) {
+            if (!moving[i]) continue;
+            double t = Math.min(1, Math.max(0, (double) (now - startTime[i]) / DURATION));
+            // ease in and out
+            double e = t*t*(3 - 2*t);
+            rects[i].setX(fromX[i] + (toX[i] - fromX[i]) * e);
+            rects[i].setY(fromY[i] + (toY[i] - fromY[i]) * e);
+            if (t == 1) stop(i);
+        }
+        if (nMoving == 0) timer.stop();
+    }
+}
@@ -8,9 +8,9 @@ import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.*;
 import model.*;
+import view.Assets;
 import view.GlobalController;
 
-import java.nio.file.Paths;
 import java.util.stream.IntStream;
 
 /**
@@ -26,6 +26,9 @@ public class DefaultTheme implements Theme {
     private Rectangle pressedRect, hintRect, goalRect;
     private Path hintArrow;
     private IntVec pressStart;
+    private State drawnState;
+    private State.Move drawnHint;
+    private CarAnimator animator;
 
     /**
      * Constructor of default theme sets the colorGenerator and grabs the audio clip for
@@ -34,7 +37,7 @@ public class DefaultTheme implements Theme {
      */
     public DefaultTheme(ColorGenerator colorGenerator) {
         this.colorGenerator = colorGenerator;
-        clickSound = new AudioClip(Paths.get("src/sounds/click.mp3").toUri().toString());
+        clickSound = Assets.getSound(Assets.CLICK_SOUND);
     }
 
     /**
@@ -84,9 +87,15 @@ public class DefaultTheme implements Theme {
         hintArrow = new Path();
 //            hintArrow.setFillRule(FillRule.NON_ZERO);
         hintArrow.setFill(Color.grayRgb(0));
+        /* The arrow's shaft and two heads, each a closed path of 5 elements whose coordinates are set by update */
+        for (int i = 0; i < 3; i++) {
+            hintArrow.getElements().add(new MoveTo());
+            for (int j = 0; j < 4; j++) hintArrow.getElements().add(new LineTo());
+        }
         gameGrid.getChildren().add(hintArrow);
     
         /* Create the rectangles used for all the cars */
+        Rectangle[] carRects = new Rectangle[state.getNumCars()];
         for (int i = 0; i < state.getNumCars(); i++) {
             IntRect r = state.getCar(i).getRect();
             
@@ -96,7 +105,9 @@ public class DefaultTheme implements Theme {
             drawRect.setArcHeight(20);
             
             gameGrid.getChildren().add(drawRect);
+            carRects[i] = drawRect;
         }
+        animator = new CarAnimator(carRects);
     
         /* This rectangle is used as an overlay to indicate which rectangle is being pressed. */
         pressedRect = new Rectangle(0, 0, 0, 0);
@@ -115,6 +126,7 @@ public class DefaultTheme implements Theme {
             pressStart = new IntVec((int)e.getX(), (int)e.getY());
             Car car = g.getModel().getGameState().getCurrentState().getCarAt(pressStart.div(100));
             if (car == null) { pressStart = null; return; }
+            animator.stop(g.getModel().getGameState().getCurrentState().getCarIndexAt(pressStart.div(100)));
             pressedRect.setX(100*car.getRect().getX());
             pressedRect.setY(100*car.getRect().getY());
             pressedRect.setWidth(100*car.getRect().getW());
@@ -143,9 +155,8 @@ public class DefaultTheme implements Theme {
             State s = g.getModel().getGameState().getCurrentState();
             int i = s.getCarIndexAt(pressStart.div(100));
             IntVec p = s.getCar(i).getRect().getPos();
-            Rectangle r = getGameGridRect(i);
-            r.setX(100*p.getX());
-            r.setY(100*p.getY());
+            /* Slide back to the model position, update() retargets it if the drag made a move */
+            animator.moveTo(i, 100*p.getX(), 100*p.getY());
             pressStart = null;
             
             double volume = g.getModel().getSettings().getVolume();
@@ -166,33 +177,57 @@ public class DefaultTheme implements Theme {
         return (Rectangle) gameGrid.getChildren().get(2 + i);
     }
     
-    private void addPathQuad(Path p, IntVec a, IntVec b, IntVec c, IntVec d) {
-        p.getElements().add(new MoveTo(a.getX(), a.getY()));
-        p.getElements().add(new LineTo(b.getX(), b.getY()));
-        p.getElements().add(new LineTo(c.getX(), c.getY()));
-        p.getElements().add(new LineTo(d.getX(), d.getY()));
-        p.getElements().add(new LineTo(a.getX(), a.getY()));
+    /**
+     * Moves the closed path of 5 elements starting at {@code i} in {@code p}
+     * to go through {@code a}, {@code b}, {@code c} and {@code d}.
+     */
+    private void setPathQuad(Path p, int i, IntVec a, IntVec b, IntVec c, IntVec d) {
+        MoveTo start = (MoveTo) p.getElements().get(i);
+        start.setX(a.getX());
+        start.setY(a.getY());
+        setLineTo(p, i + 1, b);
+        setLineTo(p, i + 2, c);
+        setLineTo(p, i + 3, d);
+        setLineTo(p, i + 4, a);
     }
-    private void addPathRect(Path p, IntVec a, IntVec b) {
-        p.getElements().add(new MoveTo(a.getX(), a.getY()));
-        p.getElements().add(new LineTo(a.getX(), b.getY()));
-        p.getElements().add(new LineTo(b.getX(), b.getY()));
-        p.getElements().add(new LineTo(b.getX(), a.getY()));
-        p.getElements().add(new LineTo(a.getX(), a.getY()));
+    private void setPathRect(Path p, int i, IntVec a, IntVec b) {
+        setPathQuad(p, i, a, new IntVec(a.getX(), b.getY()), b, new IntVec(b.getX(), a.getY()));
+    }
+    private void setLineTo(Path p, int i, IntVec a) {
+        LineTo line = (LineTo) p.getElements().get(i);
+        line.setX(a.getX());
+        line.setY(a.getY());
+    }
+    
+    /**
+     * Swaps the car colours in place, without rebuilding the board.
+     * @param colorGenerator the new colour generator
+     */
+    @Override
+    public void setColorGenerator(ColorGenerator colorGenerator) {
+        this.colorGenerator = colorGenerator;
+        colors = colorGenerator.generateFor(colors.length);
+        for (int i = 0; i < colors.length; i++) {
+            getGameGridRect(i).setFill(colors[i]);
+        }
+        /* The hint is drawn in its car's colour */
+        drawnHint = null;
     }
     
     /**
-     * Redraws all the Car rectangles based on the state in the model.
+     * Redraws the Car rectangles that have moved since the last update and the
+     * hint if it has changed.
      */
     @Override
     public void update() {
         GameState gs = g.getModel().getGameState();
         State state = gs.getCurrentState();
     
-        if (gs.getHint() == null) {
-            hintRect.setWidth(0);
-            hintRect.setHeight(0);
-            hintArrow.getElements().clear();
+        if (gs.getHint() == drawnHint && state == drawnState) {
+            /* Nothing has changed */
+        } else if (gs.getHint() == null) {
+            hintRect.setVisible(false);
+            hintArrow.setVisible(false);
         } else {
             int carI = gs.getHint().getCarI();
             int delta = gs.getHint().getDelta();
@@ -208,31 +243,37 @@ public class DefaultTheme implements Theme {
             hintRect.setHeight(100*c.getRect().getH());
             Color col = colors[carI];
             hintRect.setFill(Color.color(col.getRed(), col.getGreen(), col.getBlue(), 0.5));
+            hintRect.setVisible(true);
     
             IntVec hintStart = c.getRect().getPos().mul(100).add(odir.mul(50));
             IntVec hintEnd = hintEndPos.mul(100).add(odir.mul(50)).add((dir.manDist() < 0) ? odir.mul(0) : c.getRect().getSize().mul(100).mul(dir));
             
-            addPathRect(hintArrow, hintStart.add(odir.mul(-5)), hintEnd.add(odir.mul(5)));
-            addPathQuad(hintArrow,
+            setPathRect(hintArrow, 0, hintStart.add(odir.mul(-5)), hintEnd.add(odir.mul(5)));
+            setPathQuad(hintArrow, 5,
                 hintEnd.add(odir.mul(-10)),
                 hintEnd.add(odir.mul(-10)).add(dir.mul(-20)),
                 hintEnd.add(odir.mul(-50)).add(dir.mul(-100)),
                 hintEnd.add(odir.mul(-50)).add(dir.mul(-80))
             );
-            addPathQuad(hintArrow,
+            setPathQuad(hintArrow, 10,
                 hintEnd.add(odir.mul(10)),
                 hintEnd.add(odir.mul(10)).add(dir.mul(-20)),
                 hintEnd.add(odir.mul(50)).add(dir.mul(-100)),
                 hintEnd.add(odir.mul(50)).add(dir.mul(-80))
             );
+            hintArrow.setVisible(true);
         }
+        drawnHint = gs.getHint();
         
+        /* Only touch the cars that are not where they were last drawn */
         for (int i = 0; i < state.getNumCars(); i++) {
-            IntVec p = state.getCar(i).getRect().getPos();
-            Rectangle r = getGameGridRect(i);
-            r.setX(100*p.getX());
-            r.setY(100*p.getY());
+            Car c = state.getCar(i);
+            if (drawnState != null && c.equals(drawnState.getCar(i))) continue;
+            IntVec p = c.getRect().getPos();
+            if (drawnState == null) animator.jumpTo(i, 100*p.getX(), 100*p.getY());
+            else animator.moveTo(i, 100*p.getX(), 100*p.getY());
         }
+        drawnState = state;
     
     }
 }
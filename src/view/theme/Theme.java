@@ -16,4 +16,5 @@ public interface Theme {
     
     void init(Scene scene, GlobalController g);
     void update();
+    void setColorGenerator(ColorGenerator colorGenerator);
 }